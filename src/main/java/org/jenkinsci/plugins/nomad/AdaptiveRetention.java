@@ -0,0 +1,236 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses how long idle workers of a template are kept, from what recently happened to the template.
+ * <p>
+ * The timeout covers most of the recent idle gaps, i.e. the time from a worker going idle to the next build
+ * arriving, so workers survive the pause between two waves of builds. Gaps are learned from reused workers and
+ * from workers that were terminated just before a new one had to be provisioned. The timeout is limited to a
+ * multiple of the observed cold start, as idling longer costs more than starting a new worker, and drops to the
+ * minimum when the arrival rate says that no build is expected within it, e.g. at night.
+ */
+public final class AdaptiveRetention {
+
+    private static final String PREFIX = AdaptiveRetention.class.getName();
+
+    /**
+     * How many times its cold start a worker may idle for, at most.
+     */
+    private static final double COLD_START_RATIO = Double.parseDouble(System.getProperty(PREFIX + ".coldStartRatio", "10"));
+    private static final double GAP_PERCENTILE = 90;
+    private static final int MAX_GAPS = 64;
+    private static final long RATE_WINDOW = TimeUnit.MINUTES.toMillis(Long.getLong(PREFIX + ".rateWindowMinutes", 60));
+    private static final int MAX_HISTORY = 120;
+    private static final long HISTORY_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final AdaptiveRetention INSTANCE = new AdaptiveRetention();
+
+    private final Map<String, TemplateRetention> templates = new ConcurrentHashMap<>();
+
+    public static AdaptiveRetention get() {
+        return INSTANCE;
+    }
+
+    TemplateRetention forTemplate(String template) {
+        return templates.computeIfAbsent(Util.fixNull(template), t -> new TemplateRetention());
+    }
+
+    public Map<String, TemplateRetention> getTemplates() {
+        return new TreeMap<>(templates);
+    }
+
+    public static final class TemplateRetention {
+
+        // Decaying count of arrivals over the rate window, and when it was last decayed
+        private double arrivals;
+        private long decayed = System.currentTimeMillis();
+
+        // Exponentially weighted moving average of the time from planning a worker to it coming online
+        private long coldStart = -1;
+
+        // Recent idle gaps, in milliseconds, oldest overwritten first
+        private final long[] gaps = new long[MAX_GAPS];
+        private int gapCount;
+
+        // When the worker most recently terminated for idleness went idle, -1 if its gap was accounted for
+        private long terminatedIdleSince = -1;
+
+        private final long[] historyTimes = new long[MAX_HISTORY];
+        private final long[] historyTimeouts = new long[MAX_HISTORY];
+        private int historyCount;
+
+        /**
+         * A worker of the template accepted a task.
+         */
+        synchronized void arrival() {
+            decay(System.currentTimeMillis());
+            arrivals++;
+        }
+
+        /**
+         * An idle worker of the template got a task after being idle for the given time.
+         */
+        synchronized void reused(long idleMillis) {
+            gap(idleMillis);
+        }
+
+        /**
+         * A worker of the template took the given time from being planned to coming online.
+         */
+        synchronized void coldStart(long millis) {
+            coldStart = coldStart < 0 ? millis : (coldStart * 3 + millis) / 4;
+        }
+
+        /**
+         * A worker of the template was terminated after being idle since the given time.
+         */
+        synchronized void terminatedIdle(long idleSince) {
+            terminatedIdleSince = idleSince;
+        }
+
+        /**
+         * A worker of the template is being provisioned. If one was terminated for idleness shortly before, its
+         * idle gap would have ended now.
+         */
+        synchronized void provisioning(long maxIdleMillis) {
+            if (terminatedIdleSince < 0) {
+                return;
+            }
+            long gap = System.currentTimeMillis() - terminatedIdleSince;
+            if (gap <= maxIdleMillis) {
+                gap(gap);
+            }
+            terminatedIdleSince = -1;
+        }
+
+        private void gap(long millis) {
+            gaps[gapCount % MAX_GAPS] = millis;
+            gapCount++;
+        }
+
+        private void decay(long now) {
+            arrivals *= Math.exp(-(double) (now - decayed) / RATE_WINDOW);
+            decayed = now;
+        }
+
+        /**
+         * @param fallback the timeout until something was learned about the template
+         * @return the idle timeout in milliseconds, within the given bounds
+         */
+        synchronized long timeout(long fallback, long min, long max) {
+            long now = System.currentTimeMillis();
+            long timeout = fallback;
+
+            int samples = Math.min(gapCount, MAX_GAPS);
+            if (samples > 0) {
+                long[] recent = Arrays.copyOf(gaps, samples);
+                Arrays.sort(recent);
+                timeout = recent[(int) Math.ceil(samples * GAP_PERCENTILE / 100.0) - 1];
+
+                if (coldStart > 0) {
+                    timeout = Math.min(timeout, (long) (coldStart * COLD_START_RATIO));
+                }
+
+                if (getArrivalRate() * Math.max(timeout, min) / TimeUnit.MINUTES.toMillis(1) < 1) {
+                    // No build is expected before the timeout, the worker would idle in vain
+                    timeout = min;
+                }
+            }
+            timeout = Math.max(min, Math.min(max, timeout));
+
+            if (historyCount == 0 || now - historyTimes[(historyCount - 1) % MAX_HISTORY] >= HISTORY_INTERVAL) {
+                historyTimes[historyCount % MAX_HISTORY] = now;
+                historyTimeouts[historyCount % MAX_HISTORY] = timeout;
+                historyCount++;
+            }
+            return timeout;
+        }
+
+        /**
+         * @return arrivals per minute, averaged over the rate window
+         */
+        public synchronized double getArrivalRate() {
+            decay(System.currentTimeMillis());
+            return arrivals / TimeUnit.MILLISECONDS.toMinutes(RATE_WINDOW);
+        }
+
+        public String getArrivalRateString() {
+            return String.format("%.2f", getArrivalRate());
+        }
+
+        /**
+         * @return the typical cold start in milliseconds, -1 if none was observed yet
+         */
+        public synchronized long getColdStart() {
+            return coldStart;
+        }
+
+        public String getColdStartString() {
+            long millis = getColdStart();
+            return millis < 0 ? "-" : Util.getTimeSpanString(millis);
+        }
+
+        public synchronized int getGapSamples() {
+            return Math.min(gapCount, MAX_GAPS);
+        }
+
+        /**
+         * @return the timeouts chosen at most once a minute, oldest first
+         */
+        public synchronized List<Choice> getHistory() {
+            List<Choice> history = new ArrayList<>();
+            for (long i = Math.max(0, historyCount - MAX_HISTORY); i < historyCount; i++) {
+                int slot = (int) (i % MAX_HISTORY);
+                history.add(new Choice(historyTimes[slot], historyTimeouts[slot]));
+            }
+            return history;
+        }
+
+        /**
+         * @return the most recently chosen timeout, <code>null</code> if none was chosen yet
+         */
+        public synchronized Choice getCurrent() {
+            if (historyCount == 0) {
+                return null;
+            }
+            int slot = (historyCount - 1) % MAX_HISTORY;
+            return new Choice(historyTimes[slot], historyTimeouts[slot]);
+        }
+    }
+
+    public static final class Choice {
+
+        private final long timestamp;
+        private final long timeout;
+
+        Choice(long timestamp, long timeout) {
+            this.timestamp = timestamp;
+            this.timeout = timeout;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the chosen idle timeout in milliseconds
+         */
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public String getTimeoutString() {
+            return Util.getTimeSpanString(timeout);
+        }
+    }
+}
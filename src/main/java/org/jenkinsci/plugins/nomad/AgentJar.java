@@ -0,0 +1,79 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.remoting.Launcher;
+import hudson.remoting.Which;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The remoting jar served by this controller under <code>jnlpJars/slave.jar</code>.
+ * <p>
+ * Its content never changes while the controller is running, so the digest is computed once and used to pin
+ * the worker artifact, which lets the Nomad clients skip re-downloading a jar they already hold.
+ */
+final class AgentJar {
+
+    private static final Logger LOGGER = Logger.getLogger(AgentJar.class.getName());
+
+    private static String sha256;
+
+    private AgentJar() {
+    }
+
+    static File file() throws IOException {
+        return Which.jarFile(Launcher.class);
+    }
+
+    /**
+     * @return the go-getter checksum of the remoting jar, e.g. <code>sha256:0f1e...</code>
+     */
+    static synchronized String checksum() throws IOException {
+        if (sha256 == null) {
+            try (InputStream jar = Files.newInputStream(file().toPath());
+                 DigestInputStream in = new DigestInputStream(jar, MessageDigest.getInstance("SHA-256"))) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // the digest is updated while reading
+                }
+                sha256 = Hex.encodeHexString(in.getMessageDigest().digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+        }
+        return "sha256:" + sha256;
+    }
+
+    /**
+     * Copies the remoting jar into the given directory under a content-addressed name, unless it is already there.
+     *
+     * @return the file name of the mirrored jar
+     */
+    static String mirror(String directory) throws IOException {
+        String name = "agent-" + checksum().substring("sha256:".length()) + ".jar";
+        Path target = new File(directory, name).toPath();
+
+        if (!Files.exists(target)) {
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(target.getParent(), name, ".tmp");
+            try {
+                Files.copy(file().toPath(), tmp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                LOGGER.log(Level.INFO, "Mirrored worker jar to " + target);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return name;
+    }
+}
@@ -0,0 +1,63 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+import org.jenkinsci.plugins.nomad.NomadAffinityTemplate;
+
+public class Affinity {
+    private String LTarget;
+    private String Operand;
+    private String RTarget;
+    private Integer Weight;
+
+    public Affinity(
+            String ltarget,
+            String operand,
+            String rtarget,
+            Integer weight
+    ) {
+        LTarget = ltarget;
+        Operand = operand;
+        RTarget = rtarget;
+        Weight = weight;
+    }
+
+    public Affinity(
+            NomadAffinityTemplate nomadAffinityTemplate
+    ) {
+        LTarget = nomadAffinityTemplate.getLtarget();
+        Operand = nomadAffinityTemplate.getOperand();
+        RTarget = nomadAffinityTemplate.getRtarget();
+        Weight = nomadAffinityTemplate.getWeight();
+    }
+
+    public String getLtarget() {
+        return LTarget;
+    }
+
+    public void setLtarget(String ltarget) {
+        LTarget = ltarget;
+    }
+
+    public String getOperand() {
+        return Operand;
+    }
+
+    public void setOperand(String operand) {
+        Operand = operand;
+    }
+
+    public String getRtarget() {
+        return RTarget;
+    }
+
+    public void setRtarget(String rtarget) {
+        RTarget = rtarget;
+    }
+
+    public Integer getWeight() {
+        return Weight;
+    }
+
+    public void setWeight(Integer weight) {
+        Weight = weight;
+    }
+}
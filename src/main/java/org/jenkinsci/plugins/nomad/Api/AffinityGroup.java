@@ -0,0 +1,21 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+import org.jenkinsci.plugins.nomad.NomadAffinityTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AffinityGroup {
+
+    private final List<Affinity> affinities = new ArrayList<>();
+
+    public AffinityGroup(List<? extends NomadAffinityTemplate> affinityTemplate) {
+        for (NomadAffinityTemplate template : affinityTemplate) {
+            affinities.add(new Affinity(template));
+        }
+    }
+
+    public List<Affinity> getAffinities() {
+        return affinities;
+    }
+}
@@ -0,0 +1,115 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+public final class AllocationInfo {
+
+    private String ID;
+    private String Name;
+    private String JobID;
+    private String NodeID;
+    private String NodeName;
+    private String TaskGroup;
+    private String ClientStatus;
+    private String DesiredStatus;
+
+    public AllocationInfo(
+            String ID,
+            String name,
+            String jobID,
+            String nodeID,
+            String nodeName,
+            String taskGroup,
+            String clientStatus,
+            String desiredStatus) {
+        this.ID = ID;
+        Name = name;
+        JobID = jobID;
+        NodeID = nodeID;
+        NodeName = nodeName;
+        TaskGroup = taskGroup;
+        ClientStatus = clientStatus;
+        DesiredStatus = desiredStatus;
+    }
+
+    public String getID() {
+        return ID;
+    }
+
+    public void setID(String ID) {
+        this.ID = ID;
+    }
+
+    public String getName() {
+        return Name;
+    }
+
+    public void setName(String name) {
+        Name = name;
+    }
+
+    public String getJobID() {
+        return JobID;
+    }
+
+    public void setJobID(String jobID) {
+        JobID = jobID;
+    }
+
+    public String getNodeID() {
+        return NodeID;
+    }
+
+    public void setNodeID(String nodeID) {
+        NodeID = nodeID;
+    }
+
+    public String getNodeName() {
+        return NodeName;
+    }
+
+    public void setNodeName(String nodeName) {
+        NodeName = nodeName;
+    }
+
+    public String getTaskGroup() {
+        return TaskGroup;
+    }
+
+    public void setTaskGroup(String taskGroup) {
+        TaskGroup = taskGroup;
+    }
+
+    public String getClientStatus() {
+        return ClientStatus;
+    }
+
+    public void setClientStatus(String clientStatus) {
+        ClientStatus = clientStatus;
+    }
+
+    public String getDesiredStatus() {
+        return DesiredStatus;
+    }
+
+    public void setDesiredStatus(String desiredStatus) {
+        DesiredStatus = desiredStatus;
+    }
+
+    /**
+     * An allocation is placed as soon as the scheduler assigned it to a client node.
+     */
+    public boolean isPlaced() {
+        return NodeID != null && !NodeID.isEmpty();
+    }
+
+    public boolean isRunning() {
+        return "running".equals(ClientStatus);
+    }
+
+    /**
+     * An allocation is lost when its client node went down, it failed (e.g. was OOM-killed) or it is being evicted
+     * by a higher priority job.
+     */
+    public boolean isLost() {
+        return "lost".equals(ClientStatus) || "failed".equals(ClientStatus) || "evict".equals(DesiredStatus);
+    }
+}
@@ -0,0 +1,47 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+public class AllocationStats {
+    private ResourceUsage ResourceUsage;
+    private Long Timestamp;
+
+    public AllocationStats(ResourceUsage resourceUsage, Long timestamp) {
+        ResourceUsage = resourceUsage;
+        Timestamp = timestamp;
+    }
+
+    public ResourceUsage getResourceUsage() {
+        return ResourceUsage;
+    }
+
+    public void setResourceUsage(ResourceUsage resourceUsage) {
+        ResourceUsage = resourceUsage;
+    }
+
+    public Long getTimestamp() {
+        return Timestamp;
+    }
+
+    public void setTimestamp(Long timestamp) {
+        Timestamp = timestamp;
+    }
+
+    /**
+     * @return the CPU used by the allocation in MHz, or -1 if not reported
+     */
+    public long getCpuMHz() {
+        if (ResourceUsage == null || ResourceUsage.getCpuStats() == null || ResourceUsage.getCpuStats().getTotalTicks() == null) {
+            return -1;
+        }
+        return Math.round(ResourceUsage.getCpuStats().getTotalTicks());
+    }
+
+    /**
+     * @return the resident memory of the allocation in MB, or -1 if not reported
+     */
+    public long getMemoryMB() {
+        if (ResourceUsage == null || ResourceUsage.getMemoryStats() == null || ResourceUsage.getMemoryStats().getRSS() == null) {
+            return -1;
+        }
+        return ResourceUsage.getMemoryStats().getRSS() / (1024 * 1024);
+    }
+}
@@ -7,6 +7,7 @@ public class Artifact {
     private String GetterSource;
     private Map<String, String> GetterOptions;
     private String RelativeDest;
+    private String GetterMode;
 
     public Artifact(String getterSource, Map<String, String> getterOptions, String relativeDest) {
         GetterSource = getterSource;
@@ -37,4 +38,12 @@ public class Artifact {
     public void setRelativeDest(String relativeDest) {
         RelativeDest = relativeDest;
     }
+
+    public String getGetterMode() {
+        return GetterMode;
+    }
+
+    public void setGetterMode(String getterMode) {
+        GetterMode = getterMode;
+    }
 }
@@ -0,0 +1,30 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+public class CpuStats {
+    private Double TotalTicks;
+    private Double Percent;
+
+    public CpuStats(Double totalTicks, Double percent) {
+        TotalTicks = totalTicks;
+        Percent = percent;
+    }
+
+    /**
+     * @return the CPU used in MHz
+     */
+    public Double getTotalTicks() {
+        return TotalTicks;
+    }
+
+    public void setTotalTicks(Double totalTicks) {
+        TotalTicks = totalTicks;
+    }
+
+    public Double getPercent() {
+        return Percent;
+    }
+
+    public void setPercent(Double percent) {
+        Percent = percent;
+    }
+}
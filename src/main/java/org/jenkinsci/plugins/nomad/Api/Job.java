@@ -2,17 +2,22 @@ package org.jenkinsci.plugins.nomad.Api;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public final class Job {
 
     private String ID;
     private String Name;
+    private String Namespace;
     private String Region;
     private String Type;
     private Integer Priority;
     private String[] Datacenters;
     private List<Constraint> Constraints;
+    private List<Affinity> Affinities;
+    private List<Spread> Spreads;
     private TaskGroup[] TaskGroups;
+    private Map<String, String> Meta;
 
     public Job(
             String ID,
@@ -49,6 +54,14 @@ public final class Job {
         Name = name;
     }
 
+    public String getNamespace() {
+        return Namespace;
+    }
+
+    public void setNamespace(String namespace) {
+        Namespace = namespace;
+    }
+
     public String getRegion() {
         return Region;
     }
@@ -97,4 +110,28 @@ public final class Job {
         Constraints = constraints;
     }
 
+    public List<Affinity> getAffinities() {
+        return Affinities;
+    }
+
+    public void setAffinities(List<Affinity> affinities) {
+        Affinities = affinities;
+    }
+
+    public List<Spread> getSpreads() {
+        return Spreads;
+    }
+
+    public void setSpreads(List<Spread> spreads) {
+        Spreads = spreads;
+    }
+
+    public Map<String, String> getMeta() {
+        return Meta;
+    }
+
+    public void setMeta(Map<String, String> meta) {
+        Meta = meta;
+    }
+
 }
@@ -1,5 +1,7 @@
 package org.jenkinsci.plugins.nomad.Api;
 
+import java.util.Map;
+
 public final class JobInfo {
 
     private String ID;
@@ -7,6 +9,7 @@ public final class JobInfo {
     private String Type;
     private String Status;
     private Integer Priority;
+    private Map<String, String> Meta;
 
     public JobInfo(
             String ID,
@@ -60,4 +63,15 @@ public final class JobInfo {
     public void setStatus(String status) {
         Status = status;
     }
+
+    /**
+     * @return the meta of the job, only listed on request
+     */
+    public Map<String, String> getMeta() {
+        return Meta;
+    }
+
+    public void setMeta(Map<String, String> meta) {
+        Meta = meta;
+    }
 }
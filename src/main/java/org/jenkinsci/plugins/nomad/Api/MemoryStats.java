@@ -0,0 +1,37 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+public class MemoryStats {
+    private Long RSS;
+    private Long Usage;
+    private Long MaxUsage;
+
+    public MemoryStats(Long RSS, Long usage, Long maxUsage) {
+        this.RSS = RSS;
+        Usage = usage;
+        MaxUsage = maxUsage;
+    }
+
+    public Long getRSS() {
+        return RSS;
+    }
+
+    public void setRSS(Long RSS) {
+        this.RSS = RSS;
+    }
+
+    public Long getUsage() {
+        return Usage;
+    }
+
+    public void setUsage(Long usage) {
+        Usage = usage;
+    }
+
+    public Long getMaxUsage() {
+        return MaxUsage;
+    }
+
+    public void setMaxUsage(Long maxUsage) {
+        MaxUsage = maxUsage;
+    }
+}
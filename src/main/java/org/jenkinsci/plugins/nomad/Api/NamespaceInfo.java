@@ -0,0 +1,28 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+public final class NamespaceInfo {
+
+    private String Name;
+    private String Quota;
+
+    public NamespaceInfo(String name, String quota) {
+        Name = name;
+        Quota = quota;
+    }
+
+    public String getName() {
+        return Name;
+    }
+
+    public void setName(String name) {
+        Name = name;
+    }
+
+    public String getQuota() {
+        return Quota;
+    }
+
+    public void setQuota(String quota) {
+        Quota = quota;
+    }
+}
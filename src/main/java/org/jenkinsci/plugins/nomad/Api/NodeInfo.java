@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+public final class NodeInfo {
+
+    private String ID;
+    private String Name;
+    private String Status;
+    private String SchedulingEligibility;
+    private Boolean Drain;
+
+    public NodeInfo(
+            String ID,
+            String name,
+            String status,
+            String schedulingEligibility,
+            Boolean drain) {
+        this.ID = ID;
+        Name = name;
+        Status = status;
+        SchedulingEligibility = schedulingEligibility;
+        Drain = drain;
+    }
+
+    public String getID() {
+        return ID;
+    }
+
+    public void setID(String ID) {
+        this.ID = ID;
+    }
+
+    public String getName() {
+        return Name;
+    }
+
+    public void setName(String name) {
+        Name = name;
+    }
+
+    public String getStatus() {
+        return Status;
+    }
+
+    public void setStatus(String status) {
+        Status = status;
+    }
+
+    public String getSchedulingEligibility() {
+        return SchedulingEligibility;
+    }
+
+    public void setSchedulingEligibility(String schedulingEligibility) {
+        SchedulingEligibility = schedulingEligibility;
+    }
+
+    public Boolean getDrain() {
+        return Drain;
+    }
+
+    public void setDrain(Boolean drain) {
+        Drain = drain;
+    }
+
+    /**
+     * Whether the node is being drained or no longer accepts new allocations, e.g. ahead of maintenance.
+     */
+    public boolean isLeaving() {
+        return Boolean.TRUE.equals(Drain) || "ineligible".equals(SchedulingEligibility);
+    }
+}
@@ -0,0 +1,38 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+public final class QuotaLimit {
+
+    private String Region;
+    private Resource RegionLimit;
+    private String Hash;
+
+    public QuotaLimit(String region, Resource regionLimit, String hash) {
+        Region = region;
+        RegionLimit = regionLimit;
+        Hash = hash;
+    }
+
+    public String getRegion() {
+        return Region;
+    }
+
+    public void setRegion(String region) {
+        Region = region;
+    }
+
+    public Resource getRegionLimit() {
+        return RegionLimit;
+    }
+
+    public void setRegionLimit(Resource regionLimit) {
+        RegionLimit = regionLimit;
+    }
+
+    public String getHash() {
+        return Hash;
+    }
+
+    public void setHash(String hash) {
+        Hash = hash;
+    }
+}
@@ -0,0 +1,30 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+import java.util.List;
+
+public final class QuotaSpec {
+
+    private String Name;
+    private List<QuotaLimit> Limits;
+
+    public QuotaSpec(String name, List<QuotaLimit> limits) {
+        Name = name;
+        Limits = limits;
+    }
+
+    public String getName() {
+        return Name;
+    }
+
+    public void setName(String name) {
+        Name = name;
+    }
+
+    public List<QuotaLimit> getLimits() {
+        return Limits;
+    }
+
+    public void setLimits(List<QuotaLimit> limits) {
+        Limits = limits;
+    }
+}
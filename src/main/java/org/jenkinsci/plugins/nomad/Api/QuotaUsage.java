@@ -0,0 +1,31 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+import java.util.Map;
+
+public final class QuotaUsage {
+
+    private String Name;
+    // Keyed by the hash of the limit the usage counts against
+    private Map<String, QuotaLimit> Used;
+
+    public QuotaUsage(String name, Map<String, QuotaLimit> used) {
+        Name = name;
+        Used = used;
+    }
+
+    public String getName() {
+        return Name;
+    }
+
+    public void setName(String name) {
+        Name = name;
+    }
+
+    public Map<String, QuotaLimit> getUsed() {
+        return Used;
+    }
+
+    public void setUsed(Map<String, QuotaLimit> used) {
+        Used = used;
+    }
+}
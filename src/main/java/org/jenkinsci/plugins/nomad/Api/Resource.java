@@ -5,7 +5,9 @@ import java.util.List;
 public class Resource {
 
     private Integer CPU;
+    private Integer Cores;
     private Integer MemoryMB;
+    private Integer MemoryMaxMB;
     private List<Network> Networks;
     private List<Device> Devices;
 
@@ -43,6 +45,22 @@ public class Resource {
         this.MemoryMB = memoryMB;
     }
 
+    public Integer getCores() {
+        return Cores;
+    }
+
+    public void setCores(Integer cores) {
+        this.Cores = cores;
+    }
+
+    public Integer getMemoryMaxMB() {
+        return MemoryMaxMB;
+    }
+
+    public void setMemoryMaxMB(Integer memoryMaxMB) {
+        this.MemoryMaxMB = memoryMaxMB;
+    }
+
     public List<Device> getDevicePlugins() {
         return this.Devices;
     }
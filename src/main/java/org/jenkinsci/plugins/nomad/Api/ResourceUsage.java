@@ -0,0 +1,27 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+public class ResourceUsage {
+    private MemoryStats MemoryStats;
+    private CpuStats CpuStats;
+
+    public ResourceUsage(MemoryStats memoryStats, CpuStats cpuStats) {
+        MemoryStats = memoryStats;
+        CpuStats = cpuStats;
+    }
+
+    public MemoryStats getMemoryStats() {
+        return MemoryStats;
+    }
+
+    public void setMemoryStats(MemoryStats memoryStats) {
+        MemoryStats = memoryStats;
+    }
+
+    public CpuStats getCpuStats() {
+        return CpuStats;
+    }
+
+    public void setCpuStats(CpuStats cpuStats) {
+        CpuStats = cpuStats;
+    }
+}
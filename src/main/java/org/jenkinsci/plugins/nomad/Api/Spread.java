@@ -0,0 +1,73 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.nomad.NomadSpreadTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class Spread {
+    private static final Logger LOGGER = Logger.getLogger(Spread.class.getName());
+
+    private String Attribute;
+    private Integer Weight;
+    private List<SpreadTarget> SpreadTarget;
+
+    public Spread(
+            String attribute,
+            Integer weight,
+            List<SpreadTarget> spreadTarget
+    ) {
+        Attribute = attribute;
+        Weight = weight;
+        SpreadTarget = spreadTarget;
+    }
+
+    public Spread(
+            NomadSpreadTemplate nomadSpreadTemplate
+    ) {
+        Attribute = nomadSpreadTemplate.getAttribute();
+        Weight = nomadSpreadTemplate.getWeight();
+
+        // "rack-1=70, rack-2=30"; without targets Nomad spreads evenly over all values
+        String targets = nomadSpreadTemplate.getTargets();
+        if (StringUtils.isNotBlank(targets)) {
+            SpreadTarget = new ArrayList<>();
+            for (String target : StringUtils.split(targets, ", ")) {
+                String value = StringUtils.substringBeforeLast(target, "=");
+                String percent = StringUtils.substringAfterLast(target, "=");
+                try {
+                    SpreadTarget.add(new SpreadTarget(value, Integer.parseInt(percent.trim())));
+                } catch (NumberFormatException e) {
+                    LOGGER.log(Level.WARNING, "Ignoring the spread target " + target + " of attribute " + Attribute + ", expected value=percent");
+                }
+            }
+        }
+    }
+
+    public String getAttribute() {
+        return Attribute;
+    }
+
+    public void setAttribute(String attribute) {
+        Attribute = attribute;
+    }
+
+    public Integer getWeight() {
+        return Weight;
+    }
+
+    public void setWeight(Integer weight) {
+        Weight = weight;
+    }
+
+    public List<SpreadTarget> getSpreadTarget() {
+        return SpreadTarget;
+    }
+
+    public void setSpreadTarget(List<SpreadTarget> spreadTarget) {
+        SpreadTarget = spreadTarget;
+    }
+}
@@ -0,0 +1,21 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+import org.jenkinsci.plugins.nomad.NomadSpreadTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SpreadGroup {
+
+    private final List<Spread> spreads = new ArrayList<>();
+
+    public SpreadGroup(List<? extends NomadSpreadTemplate> spreadTemplate) {
+        for (NomadSpreadTemplate template : spreadTemplate) {
+            spreads.add(new Spread(template));
+        }
+    }
+
+    public List<Spread> getSpreads() {
+        return spreads;
+    }
+}
@@ -0,0 +1,27 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+public class SpreadTarget {
+    private String Value;
+    private Integer Percent;
+
+    public SpreadTarget(String value, Integer percent) {
+        Value = value;
+        Percent = percent;
+    }
+
+    public String getValue() {
+        return Value;
+    }
+
+    public void setValue(String value) {
+        Value = value;
+    }
+
+    public Integer getPercent() {
+        return Percent;
+    }
+
+    public void setPercent(Integer percent) {
+        Percent = percent;
+    }
+}
@@ -13,6 +13,7 @@ public class Task {
     private LogConfig LogConfig;
     private Artifact[] Artifacts;
     private Vault Vault;
+    private List<VolumeMount> VolumeMounts;
 
     public Task(
             String name,
@@ -102,4 +103,12 @@ public class Task {
         Vault = vault;
     }
 
+    public List<VolumeMount> getVolumeMounts() {
+        return VolumeMounts;
+    }
+
+    public void setVolumeMounts(List<VolumeMount> volumeMounts) {
+        VolumeMounts = volumeMounts;
+    }
+
 }
@@ -1,6 +1,7 @@
 package org.jenkinsci.plugins.nomad.Api;
 
 import java.util.Arrays;
+import java.util.Map;
 
 public class TaskGroup {
     private String Name;
@@ -8,6 +9,7 @@ public class TaskGroup {
     private Task[] Tasks;
     private RestartPolicy RestartPolicy;
     private EphemeralDisk EphemeralDisk;
+    private Map<String, VolumeRequest> Volumes;
 
     public TaskGroup(String name, Integer count, Task[] tasks, RestartPolicy restartPolicy, EphemeralDisk ephemeralDisk) {
         Name = name;
@@ -56,4 +58,12 @@ public class TaskGroup {
     public void setEphemeralDisk(EphemeralDisk ephemeralDisk) {
         EphemeralDisk = ephemeralDisk;
     }
+
+    public Map<String, VolumeRequest> getVolumes() {
+        return Volumes;
+    }
+
+    public void setVolumes(Map<String, VolumeRequest> volumes) {
+        Volumes = volumes;
+    }
 }
@@ -0,0 +1,37 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+public class VolumeMount {
+    private String Volume;
+    private String Destination;
+    private Boolean ReadOnly;
+
+    public VolumeMount(String volume, String destination, Boolean readOnly) {
+        Volume = volume;
+        Destination = destination;
+        ReadOnly = readOnly;
+    }
+
+    public String getVolume() {
+        return Volume;
+    }
+
+    public void setVolume(String volume) {
+        Volume = volume;
+    }
+
+    public String getDestination() {
+        return Destination;
+    }
+
+    public void setDestination(String destination) {
+        Destination = destination;
+    }
+
+    public Boolean getReadOnly() {
+        return ReadOnly;
+    }
+
+    public void setReadOnly(Boolean readOnly) {
+        ReadOnly = readOnly;
+    }
+}
@@ -0,0 +1,67 @@
+package org.jenkinsci.plugins.nomad.Api;
+
+public class VolumeRequest {
+    private String Name;
+    private String Type;
+    private String Source;
+    private Boolean ReadOnly;
+    private String AccessMode;
+    private String AttachmentMode;
+
+    public VolumeRequest(String name, String type, String source, Boolean readOnly, String accessMode, String attachmentMode) {
+        Name = name;
+        Type = type;
+        Source = source;
+        ReadOnly = readOnly;
+        AccessMode = accessMode;
+        AttachmentMode = attachmentMode;
+    }
+
+    public String getName() {
+        return Name;
+    }
+
+    public void setName(String name) {
+        Name = name;
+    }
+
+    public String getType() {
+        return Type;
+    }
+
+    public void setType(String type) {
+        Type = type;
+    }
+
+    public String getSource() {
+        return Source;
+    }
+
+    public void setSource(String source) {
+        Source = source;
+    }
+
+    public Boolean getReadOnly() {
+        return ReadOnly;
+    }
+
+    public void setReadOnly(Boolean readOnly) {
+        ReadOnly = readOnly;
+    }
+
+    public String getAccessMode() {
+        return AccessMode;
+    }
+
+    public void setAccessMode(String accessMode) {
+        AccessMode = accessMode;
+    }
+
+    public String getAttachmentMode() {
+        return AttachmentMode;
+    }
+
+    public void setAttachmentMode(String attachmentMode) {
+        AttachmentMode = attachmentMode;
+    }
+}
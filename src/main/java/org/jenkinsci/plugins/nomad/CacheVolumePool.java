@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.nomad;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks which worker holds which volume of a template's dependency cache pool.
+ * <p>
+ * Each volume is claimed by at most one worker at a time so concurrent builds never share, and corrupt, a cache.
+ * A claim lasts until the worker is terminated, after which the still warm volume goes to the next worker.
+ */
+final class CacheVolumePool {
+
+    private static final Logger LOGGER = Logger.getLogger(CacheVolumePool.class.getName());
+
+    private static final CacheVolumePool INSTANCE = new CacheVolumePool();
+
+    // template prefix -> volume source -> worker name
+    private final Map<String, Map<String, String>> claims = new HashMap<>();
+
+    static CacheVolumePool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the claimed volume source, or <code>null</code> if all volumes of the pool are in use
+     */
+    synchronized String claim(String template, List<String> volumes, String worker) {
+        Map<String, String> claimed = claims.computeIfAbsent(template, t -> new HashMap<>());
+
+        for (String volume : volumes) {
+            if (!claimed.containsKey(volume)) {
+                claimed.put(volume, worker);
+                LOGGER.log(Level.FINE, "Worker " + worker + " claimed cache volume " + volume);
+                return volume;
+            }
+        }
+
+        LOGGER.log(Level.INFO, "All " + volumes.size() + " cache volumes of template " + template + " are in use, " + worker + " starts without cache");
+        return null;
+    }
+
+    /**
+     * Claims the given volume for a worker that is known to use it already, e.g. after a restart.
+     *
+     * @return whether the volume was free
+     */
+    synchronized boolean claim(String template, String volume, String worker) {
+        String holder = claims.computeIfAbsent(template, t -> new HashMap<>()).putIfAbsent(volume, worker);
+        return holder == null || holder.equals(worker);
+    }
+
+    synchronized void release(String template, String volume, String worker) {
+        Map<String, String> claimed = claims.get(template);
+
+        if (claimed != null && claimed.remove(volume, worker)) {
+            LOGGER.log(Level.FINE, "Worker " + worker + " released cache volume " + volume);
+        }
+    }
+
+    synchronized Map<String, String> getClaims(String template) {
+        Map<String, String> claimed = claims.get(template);
+        return claimed == null ? new HashMap<>() : new HashMap<>(claimed);
+    }
+}
@@ -0,0 +1,155 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+import org.apache.commons.lang.StringUtils;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the agent in the image of the template with the <code>docker</code> driver.
+ */
+@Extension
+public class DockerDriverConfigBuilder extends NomadDriverConfigBuilder {
+
+    @Nonnull
+    @Override
+    public String getDriver() {
+        return "docker";
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, Object> build(@Nonnull Context context) {
+        NomadWorkerTemplate template = context.getTemplate();
+        Map<String, Object> driverConfig = containerConfig(context);
+
+        Map<String, String> auth = context.getRegistryAuth();
+        if (auth != null) {
+            driverConfig.put("auth", Collections.singletonList(auth));
+        }
+
+        String dnsServers = template.getDnsServers();
+        if (dnsServers != null && !dnsServers.isEmpty()) {
+            driverConfig.put("dns_servers", StringUtils.split(dnsServers, ", "));
+        }
+        return driverConfig;
+    }
+
+    /**
+     * A shell loop running one agent after the other in the same allocation. The agent is told not to reconnect;
+     * when the controller recycles the worker it leaves the name and secret of the next agent in the task
+     * directory before disconnecting. Without them the task ends.
+     */
+    static String supervisor(Context context, String agentJar) {
+        StringBuilder agent = new StringBuilder("java");
+        for (String option : context.getJvmOptions()) {
+            agent.append(' ').append(quote(option));
+        }
+        agent.append(" -cp ").append(quote(agentJar)).append(" hudson.remoting.jnlp.Main -headless -noReconnect");
+        for (String arg : context.getConnectionArgs()) {
+            agent.append(' ').append(quote(arg));
+        }
+
+        StringBuilder script = new StringBuilder();
+        String prefixCmd = context.getTemplate().getPrefixCmd();
+        if (!prefixCmd.isEmpty()) {
+            script.append(prefixCmd).append("; ");
+        }
+        script.append("NAME=").append(quote(context.getWorkerName()))
+                .append("; SECRET=").append(quote(context.getSecret()))
+                .append("; NEXT=\"$NOMAD_TASK_DIR/").append(NomadAllocationRecycler.NEXT_FILE).append('"')
+                .append("; while :; do")
+                .append(" if [ -n \"$SECRET\" ]; then set -- \"$SECRET\" \"$NAME\"; else set -- \"$NAME\"; fi;")
+                .append(' ').append(agent).append(" \"$@\";")
+                .append(" [ -f \"$NEXT\" ] || exit 0;")
+                .append(" read -r NAME SECRET < \"$NEXT\"; rm -f \"$NEXT\";")
+                .append(" done");
+        return script.toString();
+    }
+
+    private static String quote(String arg) {
+        return "'" + arg.replace("'", "'\"'\"'") + "'";
+    }
+
+    @Override
+    public boolean isRetryingConnection(@Nonnull NomadWorkerTemplate template) {
+        // The supervisor loop of recycled allocations runs the agent with -noReconnect
+        return !template.isRecycleAllocations();
+    }
+
+    /**
+     * @return the settings the <code>docker</code> and <code>podman</code> drivers have in common
+     */
+    protected Map<String, Object> containerConfig(Context context) {
+        NomadWorkerTemplate template = context.getTemplate();
+        Map<String, Object> driverConfig = new HashMap<>();
+
+        String agentJar = context.getAgentJar("/local/slave.jar");
+        List<String> args = context.getHeadlessArgs();
+        List<String> jvmOptions = context.getJvmOptions();
+
+        String prefixCmd = template.getPrefixCmd();
+        if (template.isRecycleAllocations()) {
+            driverConfig.put("command", "/bin/sh");
+            args.clear();
+            args.add("-c");
+            args.add(supervisor(context, agentJar));
+        } else if (!prefixCmd.isEmpty()) {
+            // If an addtional command is defined - prepend it to jenkins worker invocation
+            driverConfig.put("command", "/bin/bash");
+            String argString =
+                    prefixCmd + "; java " + StringUtils.join(jvmOptions, " ") + " -cp " + agentJar + " hudson.remoting.jnlp.Main -headless ";
+            argString += StringUtils.join(args, " ");
+            args.clear();
+            args.add("-c");
+            args.add(argString);
+        } else {
+            driverConfig.put("command", "java");
+            args.add(0, "-cp");
+            args.add(1, agentJar);
+            args.add(2, "hudson.remoting.jnlp.Main");
+            args.addAll(0, jvmOptions);
+        }
+        driverConfig.put("image", template.getImage());
+
+        String hostVolumes = template.getHostVolumes();
+        if (hostVolumes != null && !hostVolumes.isEmpty()) {
+            driverConfig.put("volumes", StringUtils.split(hostVolumes, ","));
+        }
+
+        driverConfig.put("args", args);
+        driverConfig.put("force_pull", template.getForcePull());
+        driverConfig.put("privileged", template.getPrivileged());
+        driverConfig.put("network_mode", template.getNetwork());
+
+        String imagePullTimeout = template.getImagePullTimeout();
+        if (imagePullTimeout != null && !imagePullTimeout.isEmpty()) {
+            driverConfig.put("image_pull_timeout", imagePullTimeout);
+        }
+
+        String extraHosts = template.getExtraHosts();
+        if (extraHosts != null && !extraHosts.isEmpty()) {
+            driverConfig.put("extra_hosts", StringUtils.split(extraHosts, ", "));
+        }
+
+        String securityOpt = template.getSecurityOpt();
+        if (securityOpt != null && !securityOpt.isEmpty()) {
+            driverConfig.put("security_opt", StringUtils.split(securityOpt, ", "));
+        }
+
+        String capAdd = template.getCapAdd();
+        if (capAdd != null && !capAdd.isEmpty()) {
+            driverConfig.put("cap_add", StringUtils.split(capAdd, ", "));
+        }
+
+        String capDrop = template.getCapDrop();
+        if (capDrop != null && !capDrop.isEmpty()) {
+            driverConfig.put("cap_drop", StringUtils.split(capDrop, ", "));
+        }
+        return driverConfig;
+    }
+}
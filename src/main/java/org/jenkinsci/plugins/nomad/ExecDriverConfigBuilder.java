@@ -0,0 +1,20 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Runs the agent jar with the <code>java</code> command in the chroot of the <code>exec</code> driver. No image is
+ * pulled, so the worker starts about as fast as with <code>raw_exec</code> while being isolated; Java has to be
+ * part of the chroot of the client nodes.
+ */
+@Extension
+public class ExecDriverConfigBuilder extends RawExecDriverConfigBuilder {
+
+    @Nonnull
+    @Override
+    public String getDriver() {
+        return "exec";
+    }
+}
@@ -0,0 +1,32 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs the agent jar with the <code>java</code> driver.
+ */
+@Extension
+public class JavaDriverConfigBuilder extends NomadDriverConfigBuilder {
+
+    @Nonnull
+    @Override
+    public String getDriver() {
+        return "java";
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, Object> build(@Nonnull Context context) {
+        Map<String, Object> driverConfig = new HashMap<>();
+        driverConfig.put("jar_path", context.getAgentJar("/local/slave.jar"));
+        driverConfig.put("args", context.getJnlpArgs());
+        if (!context.getJvmOptions().isEmpty()) {
+            driverConfig.put("jvm_options", context.getJvmOptions());
+        }
+        return driverConfig;
+    }
+}
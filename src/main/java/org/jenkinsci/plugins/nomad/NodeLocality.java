@@ -0,0 +1,64 @@
+package org.jenkinsci.plugins.nomad;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the Nomad client nodes that recently ran workers of a template.
+ * <p>
+ * The image and its layers are most likely still cached on those nodes, so new workers of the same template
+ * prefer them. Only a handful of nodes per template are kept, and nodes that have not run a worker for a while
+ * are forgotten since their cache has probably been garbage collected.
+ */
+final class NodeLocality {
+
+    private static final int MAX_NODES = Integer.getInteger(NodeLocality.class.getName() + ".maxNodes", 8);
+    private static final long MAX_AGE = TimeUnit.MINUTES.toMillis(Long.getLong(NodeLocality.class.getName() + ".maxAgeMinutes", 60));
+
+    private static final NodeLocality INSTANCE = new NodeLocality();
+
+    // template prefix -> node ID -> last placement, in access order
+    private final Map<String, LinkedHashMap<String, Long>> placements = new HashMap<>();
+
+    static NodeLocality get() {
+        return INSTANCE;
+    }
+
+    synchronized void placed(String template, String nodeId) {
+        LinkedHashMap<String, Long> nodes = placements.computeIfAbsent(template, t -> new LinkedHashMap<>(16, 0.75f, true));
+        nodes.put(nodeId, System.currentTimeMillis());
+
+        if (nodes.size() > MAX_NODES) {
+            Iterator<String> eldest = nodes.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return the IDs of the nodes that recently ran workers of the template, most recent last
+     */
+    synchronized List<String> recentNodes(String template) {
+        List<String> result = new ArrayList<>();
+        LinkedHashMap<String, Long> nodes = placements.get(template);
+
+        if (nodes != null) {
+            long oldest = System.currentTimeMillis() - MAX_AGE;
+            nodes.values().removeIf(placed -> placed < oldest);
+            result.addAll(nodes.keySet());
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the placements of all templates.
+     */
+    synchronized void clear() {
+        placements.clear();
+    }
+}
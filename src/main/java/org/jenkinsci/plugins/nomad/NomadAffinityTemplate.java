@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+import hudson.model.Describable;
+import hudson.model.Descriptor;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+public class NomadAffinityTemplate implements Describable<NomadAffinityTemplate> {
+
+    private final String ltarget;
+    private final String operand;
+    private final String rtarget;
+    private final Integer weight;
+
+    @DataBoundConstructor
+    public NomadAffinityTemplate(
+            String ltarget,
+            String operand,
+            String rtarget,
+            Integer weight
+    ) {
+        this.ltarget = ltarget;
+        this.operand = operand;
+        this.rtarget = rtarget;
+        this.weight = weight;
+        readResolve();
+    }
+
+    protected Object readResolve() {
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Descriptor<NomadAffinityTemplate> getDescriptor() {
+        return Jenkins.get().getDescriptor(getClass());
+    }
+
+    public String getLtarget() {
+        return ltarget;
+    }
+
+    public String getOperand() {
+        return operand;
+    }
+
+    public String getRtarget() {
+        return rtarget;
+    }
+
+    public Integer getWeight() {
+        return weight;
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends Descriptor<NomadAffinityTemplate> {
+
+        public DescriptorImpl() {
+            load();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.remoting.VirtualChannel;
+import jenkins.model.Jenkins;
+import jenkins.slaves.JnlpSlaveAgentProtocol;
+import jenkins.util.Timer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands the allocation of a single-use worker on to a new worker once its build is done, instead of deregistering
+ * the job and scheduling a new one.
+ * <p>
+ * The agent of a recycling template runs under the supervisor loop built by {@link DockerDriverConfigBuilder}.
+ * Over the channel of the finished worker the workspaces are wiped and the name and secret of its successor are
+ * left in the task directory. Removing the finished node then disconnects the agent, which exits, and the loop
+ * starts the successor's agent in the same container.
+ */
+final class NomadAllocationRecycler {
+
+    private static final Logger LOGGER = Logger.getLogger(NomadAllocationRecycler.class.getName());
+
+    static final String NEXT_FILE = "next-agent";
+
+    private static final long POLL_INTERVAL = TimeUnit.SECONDS.toMillis(2);
+
+    private NomadAllocationRecycler() {
+    }
+
+    /**
+     * @return whether the allocation of the worker may run another worker
+     */
+    static boolean canRecycle(NomadWorker worker) {
+        NomadWorkerTemplate template = worker.getTemplate();
+        return template != null && template.isRecycleAllocations() && !worker.getReusable()
+                && NomadWorkerTemplate.isRecyclingDriver(template.getDriver(), template.getJobSpec())
+                && worker.getRecycles() + 1 < template.getMaxRecycles();
+    }
+
+    /**
+     * Recycles the allocation of the idle worker.
+     *
+     * @return <code>false</code> if the allocation could not be handed on and the worker should be terminated
+     */
+    static boolean recycle(NomadComputer computer, NomadWorker worker) {
+        NomadCloud cloud = worker.getCloud();
+        NomadWorkerTemplate template = worker.getTemplate();
+        VirtualChannel channel = computer.getChannel();
+        if (cloud == null || template == null || channel == null) {
+            return false;
+        }
+
+        String successorName = template.createWorkerName();
+        int numExecutors = worker.getNumExecutors();
+        NomadWorker successor;
+        try {
+            String taskDir = computer.getEnvironment().get("NOMAD_TASK_DIR");
+            if (taskDir == null) {
+                return false;
+            }
+
+            successor = cloud.newWorker(successorName, template, numExecutors);
+            successor.setJobName(worker.getJobName());
+            successor.setAllocation(worker.getAllocationId(), worker.getNomadNodeId());
+            successor.setCacheVolume(worker.getCacheVolume());
+            successor.setRecycles(worker.getRecycles() + 1);
+
+            // Nothing of the finished build is left for the next one
+            FilePath workspaces = worker.getWorkspaceRoot();
+            if (workspaces != null) {
+                workspaces.deleteContents();
+            }
+
+            String secret = Jenkins.get().isUseSecurity() ? JnlpSlaveAgentProtocol.SLAVE_SECRET.mac(successorName) : "";
+            FilePath dir = new FilePath(channel, taskDir);
+            FilePath next = dir.child(NEXT_FILE + ".tmp");
+            next.write(successorName + " " + secret + "\n", "UTF-8");
+            next.renameTo(dir.child(NEXT_FILE));
+
+            cloud.addPending(numExecutors);
+            Jenkins.get().addNode(successor);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to recycle the allocation of " + worker.getNodeName() + ", terminating it instead", e);
+            return false;
+        }
+
+        ProvisioningJournal journal = ProvisioningJournal.get();
+        journal.planned(cloud.name, template.getPrefix(), successorName, TimeUnit.MINUTES.toMillis(cloud.getWorkerTimeout()));
+        journal.record(ProvisioningJournal.Type.RECYCLED, cloud.name, template.getPrefix(), successorName,
+                "Recycled allocation " + worker.getAllocationId() + " of " + worker.getNodeName());
+
+        try {
+            // The job stays, only the node goes: its agent exits and the supervisor starts the successor
+            Jenkins.get().removeNode(worker);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to remove recycled worker " + worker.getNodeName(), e);
+        }
+
+        awaitConnection(cloud, template, successor, numExecutors,
+                System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(cloud.getWorkerTimeout()));
+        return true;
+    }
+
+    private static void awaitConnection(NomadCloud cloud, NomadWorkerTemplate template, NomadWorker successor, int numExecutors, long deadline) {
+        Computer computer = successor.toComputer();
+        if (computer != null && computer.isOnline()) {
+            ProvisioningJournal.get().record(ProvisioningJournal.Type.ONLINE, cloud.name, template.getPrefix(), successor.getNodeName(), null);
+            cloud.addPending(-numExecutors);
+            return;
+        }
+        if (System.currentTimeMillis() < deadline) {
+            Timer.get().schedule(() -> awaitConnection(cloud, template, successor, numExecutors, deadline), POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        ProvisioningJournal.get().record(ProvisioningJournal.Type.TIMEOUT, cloud.name, template.getPrefix(), successor.getNodeName(),
+                "Recycled worker did not come online within " + cloud.getWorkerTimeout() + " minutes");
+        cloud.addPending(-numExecutors);
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                successor.terminate();
+            } catch (IOException | InterruptedException e) {
+                LOGGER.log(Level.WARNING, "Failed to terminate recycled worker " + successor.getNodeName(), e);
+            }
+        });
+    }
+}
@@ -0,0 +1,118 @@
+package org.jenkinsci.plugins.nomad;
+
+import com.google.gson.Gson;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.nomad.Api.AllocationInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks the allocation status of the workers of templates requeueing lost builds, and aborts the builds of
+ * workers whose allocation was lost so that they can be requeued by the {@link NomadBuildRequeuer}. The lost
+ * allocations are listed once per cloud and namespace rather than looked up worker by worker.
+ */
+@Extension
+public class NomadAllocationWatcher extends AsyncPeriodicWork {
+
+    private static final long INTERVAL = TimeUnit.SECONDS.toMillis(Long.getLong(NomadAllocationWatcher.class.getName() + ".intervalSeconds", 15));
+
+    public NomadAllocationWatcher() {
+        super("Nomad allocation watcher");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return INTERVAL;
+    }
+
+    @Override
+    protected Level getNormalLoggingLevel() {
+        return Level.FINE;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        // The watched workers by cloud and namespace, each keyed by allocation
+        Map<String, Map<String, Map<String, NomadComputer>>> watched = new HashMap<>();
+        for (Computer c : Jenkins.get().getComputers()) {
+            if (!(c instanceof NomadComputer) || ((NomadComputer) c).getLostAllocation() != null) {
+                continue;
+            }
+
+            NomadComputer computer = (NomadComputer) c;
+            NomadWorker worker = computer.getNode();
+            if (worker == null || worker.getAllocationId() == null) {
+                continue;
+            }
+            NomadWorkerTemplate template = worker.getTemplate();
+            if (template == null || !template.isRequeueLostBuilds()) {
+                continue;
+            }
+            watched.computeIfAbsent(worker.getCloudName(), n -> new HashMap<>())
+                    .computeIfAbsent(Util.fixNull(worker.getNamespace()), n -> new HashMap<>())
+                    .put(worker.getAllocationId(), computer);
+        }
+
+        for (Map.Entry<String, Map<String, Map<String, NomadComputer>>> clouds : watched.entrySet()) {
+            NomadCloud cloud = (NomadCloud) Jenkins.get().getCloud(clouds.getKey());
+            if (cloud == null) {
+                continue;
+            }
+            for (Map.Entry<String, Map<String, NomadComputer>> namespace : clouds.getValue().entrySet()) {
+                watch(cloud, namespace.getKey(), namespace.getValue());
+            }
+        }
+    }
+
+    /**
+     * Lists the lost allocations of the workers' templates in one request. Clusters that reject the filter are
+     * asked for each allocation instead.
+     */
+    private static void watch(NomadCloud cloud, String namespace, Map<String, NomadComputer> computers) {
+        Set<String> prefixes = new TreeSet<>();
+        for (NomadComputer computer : computers.values()) {
+            NomadWorker worker = computer.getNode();
+            if (worker != null) {
+                prefixes.add(Pattern.quote(worker.getTemplatePrefix() + "-"));
+            }
+        }
+        String filter = "(ClientStatus == \"lost\" or ClientStatus == \"failed\" or DesiredStatus == \"evict\") and JobID matches "
+                + new Gson().toJson("^(" + String.join("|", prefixes) + ")");
+
+        AllocationInfo[] lost = cloud.nomad().listAllocations(filter, namespace, cloud.getNomadACL());
+        if (lost == null) {
+            lost = new AllocationInfo[0];
+            for (Map.Entry<String, NomadComputer> entry : computers.entrySet()) {
+                AllocationInfo allocation = cloud.nomad().getAllocation(entry.getKey(), namespace, cloud.getNomadACL());
+                if (allocation != null && allocation.isLost()) {
+                    entry.getValue().allocationLost(allocation.getID(), describe(allocation));
+                }
+            }
+        }
+
+        for (AllocationInfo allocation : lost) {
+            NomadComputer computer = computers.get(allocation.getID());
+            if (computer != null && allocation.isLost()) {
+                computer.allocationLost(allocation.getID(), describe(allocation));
+            }
+        }
+    }
+
+    static String describe(AllocationInfo allocation) {
+        if ("evict".equals(allocation.getDesiredStatus())) {
+            return "was evicted";
+        }
+        return "is " + allocation.getClientStatus() + " on node " + allocation.getNodeName();
+    }
+}
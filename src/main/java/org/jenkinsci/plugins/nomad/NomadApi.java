@@ -2,17 +2,27 @@ package org.jenkinsci.plugins.nomad;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import hudson.Util;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
 import okhttp3.*;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.nomad.Api.*;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,19 +31,40 @@ public final class NomadApi {
     public static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
     private static final Logger LOGGER = Logger.getLogger(NomadApi.class.getName());
     private static final OkHttpClient client = new OkHttpClient();
+    static final String CACHE_VOLUME = "jenkins-cache";
+    static final String TASK_NAME = "jenkins-worker";
     private final String nomadApi;
+    private final List<NomadDriverConfigBuilder> driverConfigBuilders;
 
     NomadApi(String nomadApi) {
+        this(nomadApi, null);
+    }
+
+    /**
+     * @param driverConfigBuilders the builders of the task drivers, <code>null</code> for the registered extensions
+     */
+    NomadApi(String nomadApi, List<NomadDriverConfigBuilder> driverConfigBuilders) {
         this.nomadApi = nomadApi;
+        this.driverConfigBuilders = driverConfigBuilders;
     }
 
+    /**
+     * @return the listed jobs, or <code>null</code> if Nomad did not list them, e.g. rejected a filter it does not
+     * support
+     */
     JobInfo[] getJobs(Request request) {
-        JobInfo[] jobs;
-        String body = checkResponseAndGetBody(request);
-        Gson gson = new Gson();
-
-        jobs = gson.fromJson(body, JobInfo[].class);
-        return jobs;
+        try (Response response = client.newCall(request).execute();
+             ResponseBody body = response.body()) {
+            String bodyString = body != null ? body.string() : "";
+            if (response.code() != 200) {
+                LOGGER.log(Level.WARNING, "Failed to list jobs (" + response.code() + "): " + bodyString);
+                return null;
+            }
+            return new Gson().fromJson(bodyString, JobInfo[].class);
+        } catch (IOException | JsonSyntaxException e) {
+            LOGGER.log(Level.WARNING, "Failed to list jobs: " + e.getMessage() + "\nRequest:\n" + request);
+            return null;
+        }
     }
 
     String checkResponseAndGetBody (Request request) {
@@ -55,20 +86,36 @@ public final class NomadApi {
         return bodyString;
     }
 
-    void startWorker(NomadCloud cloud, String workerName, String nomadToken, String jnlpSecret, NomadWorkerTemplate template) {
+    /**
+     * Scopes a request to the given namespace, requests without namespace go to the <code>default</code> namespace.
+     */
+    private static String withNamespace(String url, String namespace) {
+        if (StringUtils.isEmpty(namespace)) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + "namespace=" + namespace;
+    }
 
-        String workerJob = buildWorkerJob(
-                workerName,
-                jnlpSecret,
-                cloud,
-                template
-        );
+    void startWorker(NomadCloud cloud, String workerName, String nomadToken, String jnlpSecret, NomadWorkerTemplate template, WorkerOverrides overrides) throws IOException {
+
+        String workerJob;
+        if (template.getJobSpec() != null) {
+            workerJob = NomadJobSpecs.render(cloud, template, workerName, jnlpSecret);
+        } else {
+            workerJob = buildWorkerJob(
+                    workerName,
+                    jnlpSecret,
+                    cloud,
+                    template,
+                    overrides
+            );
+        }
 
         LOGGER.log(Level.FINE, workerJob);
 
         RequestBody body = RequestBody.create(JSON, workerJob);
         Request.Builder builder = new Request.Builder()
-                .url(this.nomadApi + "/v1/job/" + workerName + "?region=" + template.getRegion());
+                .url(withNamespace(this.nomadApi + "/v1/job/" + workerName + "?region=" + template.getRegion(), cloud.namespaceOf(template)));
 
         if (StringUtils.isNotEmpty(nomadToken))
             builder = builder.header("X-Nomad-Token", nomadToken);
@@ -79,10 +126,53 @@ public final class NomadApi {
         checkResponseAndGetBody(request);
     }
 
-    void stopWorker(String workerName, String nomadToken) {
+    /**
+     * Lets Nomad parse a job specification in HCL.
+     *
+     * @return the job in the JSON form the job endpoints take
+     * @throws IOException if Nomad could not be reached or rejected the specification
+     */
+    JsonObject parseJob(String hcl, String nomadToken) throws IOException {
+
+        JsonObject parse = new JsonObject();
+        parse.addProperty("JobHCL", hcl);
+        parse.addProperty("Canonicalize", true);
+
+        Request.Builder builder = new Request.Builder()
+                .url(this.nomadApi + "/v1/jobs/parse")
+                .post(RequestBody.create(JSON, parse.toString()));
+
+        if (StringUtils.isNotEmpty(nomadToken))
+            builder = builder.addHeader("X-Nomad-Token", nomadToken);
+
+        try (Response response = client.newCall(builder.build()).execute();
+             ResponseBody body = response.body()) {
+            String bodyString = body != null ? body.string() : "";
+            if (response.code() != 200) {
+                throw new IOException("Nomad rejected the job specification: " + bodyString.trim());
+            }
+            try {
+                return JsonParser.parseString(bodyString).getAsJsonObject();
+            } catch (RuntimeException e) {
+                throw new IOException("Unexpected response parsing the job specification: " + bodyString, e);
+            }
+        }
+    }
+
+    void stopWorker(String workerName, String namespace, String nomadToken) {
+        stopWorker(workerName, namespace, nomadToken, false);
+    }
+
+    /**
+     * Deregisters the job of a worker.
+     *
+     * @param purge whether to remove the job from the state of the cluster right away instead of leaving it dead
+     *              until the next garbage collection
+     */
+    void stopWorker(String workerName, String namespace, String nomadToken, boolean purge) {
 
         Request.Builder builder = new Request.Builder()
-                .url(this.nomadApi + "/v1/job/" + workerName);
+                .url(withNamespace(this.nomadApi + "/v1/job/" + workerName + (purge ? "?purge=true" : ""), namespace));
 
         if (StringUtils.isNotEmpty(nomadToken))
             builder = builder.addHeader("X-Nomad-Token", nomadToken);
@@ -93,12 +183,31 @@ public final class NomadApi {
         checkResponseAndGetBody(request);
     }
 
-    JobInfo[] getRunningWorkers(String prefix, String nomadToken) {
+    JobInfo[] getRunningWorkers(String prefix, String namespace, String nomadToken) {
+        return getRunningWorkers(prefix, null, namespace, nomadToken);
+    }
+
+    /**
+     * @param filter the filter expression Nomad selects the listed jobs by, e.g. from {@link NomadJobMeta}, or
+     *               <code>null</code> to list all jobs with the prefix
+     * @return the listed jobs, or <code>null</code> if Nomad did not list them
+     */
+    JobInfo[] getRunningWorkers(String prefix, String filter, String namespace, String nomadToken) {
 
         JobInfo[] nomadJobs = null;
 
+        // The stubs carry the meta only on request, adoption reads the executor count from it
+        String url = this.nomadApi + "/v1/jobs?prefix=" + prefix + "&meta=true";
+        if (StringUtils.isNotEmpty(filter)) {
+            try {
+                url += "&filter=" + URLEncoder.encode(filter, StandardCharsets.UTF_8.name());
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
         Request.Builder builder = new Request.Builder()
-                .url(this.nomadApi + "/v1/jobs?prefix=" + prefix)
+                .url(withNamespace(url, namespace))
                 .get();
 
         if (StringUtils.isNotEmpty(nomadToken))
@@ -110,136 +219,364 @@ public final class NomadApi {
         return nomadJobs;
     }
 
-    private Map<String, Object> buildDriverConfig(String name, String secret, NomadCloud cloud, NomadWorkerTemplate template) {
-        Map<String, Object> driverConfig = new HashMap<>();
+    /**
+     * @return the registered job, or <code>null</code> if it is not known
+     */
+    Job getJob(String jobName, String namespace, String nomadToken) {
 
-        if (template.getUsername() != null && !template.getUsername().isEmpty()) {
-            Map<String, String> authConfig = new HashMap<>();
-            authConfig.put("username", template.getUsername());
-            authConfig.put("password", template.getPassword().getPlainText());
+        Request.Builder builder = new Request.Builder()
+                .url(withNamespace(this.nomadApi + "/v1/job/" + jobName, namespace))
+                .get();
 
-            ArrayList<Map> credentials = new ArrayList<>();
-            credentials.add(authConfig);
+        if (StringUtils.isNotEmpty(nomadToken))
+            builder = builder.addHeader("X-Nomad-Token", nomadToken);
 
-            driverConfig.put("auth", credentials);
+        String body = checkResponseAndGetBody(builder.build());
+        try {
+            return new Gson().fromJson(body, Job.class);
+        } catch (JsonSyntaxException e) {
+            LOGGER.log(Level.FINE, "Unexpected job " + jobName + ": " + body);
+            return null;
         }
+    }
 
-        ArrayList<String> args = new ArrayList<>();
+    /**
+     * @return the namespace, or <code>null</code> if it does not exist or the cluster has no namespaces
+     */
+    NamespaceInfo getNamespace(String namespace, String nomadToken) {
+        return get("/v1/namespace/" + namespace, NamespaceInfo.class, nomadToken);
+    }
+
+    /**
+     * @return the quota specification, or <code>null</code> if it does not exist or the cluster has no quotas
+     */
+    QuotaSpec getQuota(String quota, String nomadToken) {
+        return get("/v1/quota/" + quota, QuotaSpec.class, nomadToken);
+    }
 
-        if (template.isJavaDriver()) {
-            args.add("-jnlpUrl");
+    QuotaUsage[] getQuotaUsages(String nomadToken) {
+        QuotaUsage[] usages = get("/v1/quota-usages", QuotaUsage[].class, nomadToken);
+        return usages != null ? usages : new QuotaUsage[0];
+    }
 
-            args.add(Util.ensureEndsWith(cloud.getJenkinsUrl(), "/") + "computer/" + name + "/worker-agent.jnlp");
+    private <T> T get(String path, Class<T> type, String nomadToken) {
+        Request.Builder builder = new Request.Builder()
+                .url(this.nomadApi + path)
+                .get();
 
-            // java -cp /local/slave.jar [options...] <secret key> <agent name>
-            if (!secret.isEmpty()) {
-                args.add("-secret");
-                args.add(secret);
-            }
+        if (StringUtils.isNotEmpty(nomadToken))
+            builder = builder.addHeader("X-Nomad-Token", nomadToken);
 
-            driverConfig.put("jar_path", "/local/slave.jar");
-            driverConfig.put("args", args);
-        } else if (template.isRawExecDriver()) {
-            args.add("-jar");
-            args.add("./local/slave.jar");
+        String body = checkResponseAndGetBody(builder.build());
+        try {
+            return new Gson().fromJson(body, type);
+        } catch (JsonSyntaxException e) {
+            // Open source clusters answer quota and namespace requests with a plain text error
+            LOGGER.log(Level.FINE, "Unexpected response for " + path + ": " + body);
+            return null;
+        }
+    }
 
-            args.add("-jnlpUrl");
-            args.add(Util.ensureEndsWith(cloud.getJenkinsUrl(), "/") + "computer/" + name + "/worker-agent.jnlp");
+    /**
+     * @return the client nodes that are draining or ineligible for new allocations
+     */
+    NodeInfo[] getLeavingNodes(String nomadToken) {
 
-            // java -cp /local/slave.jar [options...] <secret key> <agent name>
-            if (!secret.isEmpty()) {
-                args.add("-secret");
-                args.add(secret);
-            }
+        HttpUrl url = HttpUrl.get(this.nomadApi + "/v1/nodes").newBuilder()
+                // Older servers ignore the filter, the result is filtered again by the caller
+                .addQueryParameter("filter", "Drain == true or SchedulingEligibility == \"ineligible\"")
+                .build();
 
-            driverConfig.put("command", "java");
-            driverConfig.put("args", args);
-        } else if (template.isDockerDriver()) {
-            args.add("-headless");
+        Request.Builder builder = new Request.Builder()
+                .url(url)
+                .get();
 
-            if (!cloud.getJenkinsUrl().isEmpty()) {
-                args.add("-url");
-                args.add(cloud.getJenkinsUrl());
-            }
+        if (StringUtils.isNotEmpty(nomadToken))
+            builder = builder.addHeader("X-Nomad-Token", nomadToken);
 
-            if (!cloud.getJenkinsTunnel().isEmpty()) {
-                args.add("-tunnel");
-                args.add(cloud.getJenkinsTunnel());
-            }
+        String body = checkResponseAndGetBody(builder.build());
+        NodeInfo[] nodes = null;
+        try {
+            nodes = new Gson().fromJson(body, NodeInfo[].class);
+        } catch (JsonSyntaxException e) {
+            LOGGER.log(Level.FINE, "Unexpected node list: " + body);
+        }
 
-            if (!template.getRemoteFs().isEmpty()) {
-                args.add("-workDir");
-                args.add(Util.ensureEndsWith(template.getRemoteFs(), "/"));
-            }
+        return nodes != null ? nodes : new NodeInfo[0];
+    }
 
-            // java -cp /local/slave.jar [options...] <secret key> <agent name>
-            if (!secret.isEmpty()) {
-                args.add(secret);
-            }
-            args.add(name);
-
-            String prefixCmd = template.getPrefixCmd();
-            // If an addtional command is defined - prepend it to jenkins worker invocation
-            if (!prefixCmd.isEmpty()) {
-                driverConfig.put("command", "/bin/bash");
-                String argString =
-                        prefixCmd + "; java -cp /local/slave.jar hudson.remoting.jnlp.Main -headless ";
-                argString += StringUtils.join(args, " ");
-                args.clear();
-                args.add("-c");
-                args.add(argString);
-            } else {
-                driverConfig.put("command", "java");
-                args.add(0, "-cp");
-                args.add(1, "/local/slave.jar");
-                args.add(2, "hudson.remoting.jnlp.Main");
-            }
-            driverConfig.put("image", template.getImage());
+    /**
+     * @param filter the filter expression Nomad selects the listed allocations by
+     * @return the allocations, or <code>null</code> if Nomad did not list them, e.g. rejected the filter
+     */
+    AllocationInfo[] listAllocations(String filter, String namespace, String nomadToken) {
+        String url;
+        try {
+            url = this.nomadApi + "/v1/allocations?filter=" + URLEncoder.encode(filter, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
 
-            String hostVolumes = template.getHostVolumes();
-            if (hostVolumes != null && !hostVolumes.isEmpty()) {
-                driverConfig.put("volumes", StringUtils.split(hostVolumes, ","));
-            }
+        Request.Builder builder = new Request.Builder()
+                .url(withNamespace(url, namespace))
+                .get();
+
+        if (StringUtils.isNotEmpty(nomadToken))
+            builder = builder.addHeader("X-Nomad-Token", nomadToken);
+
+        try {
+            return new Gson().fromJson(execute(builder.build()), AllocationInfo[].class);
+        } catch (IOException | JsonSyntaxException e) {
+            LOGGER.log(Level.FINE, "Failed to list allocations: " + e.getMessage());
+            return null;
+        }
+    }
 
-            driverConfig.put("args", args);
-            driverConfig.put("force_pull", template.getForcePull());
-            driverConfig.put("privileged", template.getPrivileged());
-            driverConfig.put("network_mode", template.getNetwork());
+    /**
+     * @return the allocation, or <code>null</code> if it is not known
+     */
+    AllocationInfo getAllocation(String allocationId, String namespace, String nomadToken) {
 
-            String extraHosts = template.getExtraHosts();
-            if (extraHosts != null && !extraHosts.isEmpty()) {
-                driverConfig.put("extra_hosts", StringUtils.split(extraHosts, ", "));
-            }
+        Request.Builder builder = new Request.Builder()
+                .url(withNamespace(this.nomadApi + "/v1/allocation/" + allocationId, namespace))
+                .get();
+
+        if (StringUtils.isNotEmpty(nomadToken))
+            builder = builder.addHeader("X-Nomad-Token", nomadToken);
+
+        String body = checkResponseAndGetBody(builder.build());
+        try {
+            return new Gson().fromJson(body, AllocationInfo.class);
+        } catch (JsonSyntaxException e) {
+            LOGGER.log(Level.FINE, "Unexpected allocation " + allocationId + ": " + body);
+            return null;
+        }
+    }
+
+    /**
+     * Copies the tail of a log of the worker task to the given stream, then follows it for a while. At most
+     * <code>maxBytes</code> are copied, chunk by chunk, so a chatty task can't fill the heap.
+     *
+     * @param type <code>stdout</code> or <code>stderr</code>
+     */
+    void streamTaskLog(String allocationId, String type, String namespace, String nomadToken, OutputStream out, long maxBytes, long followMillis) throws IOException {
+
+        HttpUrl.Builder url = HttpUrl.get(this.nomadApi + "/v1/client/fs/logs/" + allocationId).newBuilder()
+                .addQueryParameter("task", TASK_NAME)
+                .addQueryParameter("type", type)
+                .addQueryParameter("plain", "true")
+                .addQueryParameter("follow", "true")
+                .addQueryParameter("origin", "end")
+                .addQueryParameter("offset", String.valueOf(maxBytes));
+        if (StringUtils.isNotEmpty(namespace))
+            url.addQueryParameter("namespace", namespace);
+
+        Request.Builder builder = new Request.Builder()
+                .url(url.build())
+                .get();
+
+        if (StringUtils.isNotEmpty(nomadToken))
+            builder = builder.addHeader("X-Nomad-Token", nomadToken);
 
-            String dnsServers = template.getDnsServers();
-            if (dnsServers != null && !dnsServers.isEmpty()) {
-              driverConfig.put("dns_servers", StringUtils.split(dnsServers, ", "));
+        Call call = client.newCall(builder.build());
+        // Following never ends on its own, the call timeout also covers reading the body
+        call.timeout().timeout(followMillis, TimeUnit.MILLISECONDS);
+
+        try (Response response = call.execute();
+             ResponseBody body = response.body()) {
+            if (response.code() != 200 || body == null) {
+                out.write(("Failed to read " + type + ": HTTP " + response.code() + "\n").getBytes(StandardCharsets.UTF_8));
+                return;
             }
 
-            String securityOpt = template.getSecurityOpt();
-            if (securityOpt != null && !securityOpt.isEmpty()) {
-                driverConfig.put("security_opt", StringUtils.split(securityOpt, ", "));
+            InputStream in = body.byteStream();
+            byte[] buffer = new byte[8192];
+            long copied = 0;
+            int read;
+            while (copied < maxBytes && (read = in.read(buffer, 0, (int) Math.min(buffer.length, maxBytes - copied))) != -1) {
+                out.write(buffer, 0, read);
+                copied += read;
             }
+        } catch (InterruptedIOException e) {
+            // Done following
+        }
+    }
+
+    /**
+     * @return the current resource usage of the allocation, or <code>null</code> if it is not available
+     */
+    AllocationStats getAllocationStats(String allocationId, String namespace, String nomadToken) {
+
+        Request.Builder builder = new Request.Builder()
+                .url(withNamespace(this.nomadApi + "/v1/client/allocation/" + allocationId + "/stats", namespace))
+                .get();
+
+        if (StringUtils.isNotEmpty(nomadToken))
+            builder = builder.addHeader("X-Nomad-Token", nomadToken);
+
+        String body = checkResponseAndGetBody(builder.build());
+        try {
+            return new Gson().fromJson(body, AllocationStats.class);
+        } catch (JsonSyntaxException e) {
+            LOGGER.log(Level.FINE, "Unexpected allocation stats for " + allocationId + ": " + body);
+            return null;
+        }
+    }
+
+    /**
+     * Enables preemption of batch jobs in the scheduler configuration of the cluster.
+     *
+     * @return <code>false</code> if it was enabled already
+     * @throws IOException if the configuration could not be read or written, e.g. for lack of operator access
+     */
+    boolean enableBatchPreemption(String nomadToken) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(this.nomadApi + "/v1/operator/scheduler/configuration")
+                .get();
+
+        if (StringUtils.isNotEmpty(nomadToken))
+            builder = builder.addHeader("X-Nomad-Token", nomadToken);
+
+        JsonObject config;
+        JsonObject preemption;
+        try {
+            config = JsonParser.parseString(execute(builder.build()))
+                    .getAsJsonObject()
+                    .getAsJsonObject("SchedulerConfig");
+            preemption = config != null ? config.getAsJsonObject("PreemptionConfig") : null;
+        } catch (RuntimeException e) {
+            throw new IOException("Unexpected scheduler configuration: " + e.getMessage(), e);
+        }
+        if (preemption == null) {
+            throw new IOException("The scheduler configuration has no preemption configuration");
+        }
+
+        if (preemption.has("BatchSchedulerEnabled") && preemption.get("BatchSchedulerEnabled").getAsBoolean()) {
+            return false;
+        }
+        preemption.addProperty("BatchSchedulerEnabled", true);
 
-            String capAdd = template.getCapAdd();
-            if (capAdd != null && !capAdd.isEmpty()) {
-                driverConfig.put("cap_add", StringUtils.split(capAdd, ", "));
+        builder = new Request.Builder()
+                .url(this.nomadApi + "/v1/operator/scheduler/configuration")
+                .put(RequestBody.create(JSON, config.toString()));
+
+        if (StringUtils.isNotEmpty(nomadToken))
+            builder = builder.addHeader("X-Nomad-Token", nomadToken);
+
+        LOGGER.log(Level.INFO, "Enabling preemption of batch jobs in the Nomad scheduler configuration");
+        execute(builder.build());
+        return true;
+    }
+
+    /**
+     * @return the body of the successful response
+     * @throws IOException if the request failed or was not successful
+     */
+    private String execute(Request request) throws IOException {
+        try (Response response = client.newCall(request).execute();
+             ResponseBody body = response.body()) {
+            String bodyString = body != null ? body.string() : "";
+            if (response.code() != 200) {
+                throw new IOException("Nomad responded with " + response.code() + ": " + bodyString);
             }
+            return bodyString;
+        }
+    }
 
-            String capDrop = template.getCapDrop();
-            if (capDrop != null && !capDrop.isEmpty()) {
-                driverConfig.put("cap_drop", StringUtils.split(capDrop, ", "));
+    AllocationInfo[] getAllocations(String jobName, String region, String namespace, String nomadToken) {
+
+        Request.Builder builder = new Request.Builder()
+                .url(withNamespace(this.nomadApi + "/v1/job/" + jobName + "/allocations?region=" + region, namespace))
+                .get();
+
+        if (StringUtils.isNotEmpty(nomadToken))
+            builder = builder.addHeader("X-Nomad-Token", nomadToken);
+
+        String body = checkResponseAndGetBody(builder.build());
+        AllocationInfo[] allocations = null;
+        try {
+            allocations = new Gson().fromJson(body, AllocationInfo[].class);
+        } catch (JsonSyntaxException e) {
+            LOGGER.log(Level.FINE, "Unexpected allocation list for " + jobName + ": " + body);
+        }
+
+        return allocations != null ? allocations : new AllocationInfo[0];
+    }
+
+    /**
+     * JVM options keeping the agent within the resources reserved for it. With memory oversubscription the
+     * container limit is the burst maximum, so the JVM is told to size itself after the reserved memory instead.
+     */
+    private List<String> buildAgentJvmOptions(int memory, NomadWorkerTemplate template) {
+        List<String> options = new ArrayList<>();
+        if (template.getCores() > 0) {
+            options.add("-XX:ActiveProcessorCount=" + template.getCores());
+        }
+        if (template.getMemoryMax() > memory) {
+            options.add("-XX:MaxRAM=" + memory + "m");
+        }
+        return options;
+    }
+
+    private Map<String, Object> buildDriverConfig(String name, String secret, NomadCloud cloud, NomadWorkerTemplate template, List<String> jvmOptions) {
+        Map<String, Object> driverConfig = new HashMap<>();
+
+        NomadDriverConfigBuilder builder = driverConfigBuilders != null
+                ? NomadDriverConfigBuilder.forDriver(template.getDriver(), driverConfigBuilders)
+                : NomadDriverConfigBuilder.forDriver(template.getDriver());
+        if (builder != null) {
+            driverConfig.putAll(builder.build(new NomadDriverConfigBuilder.Context(name, secret, cloud, template, jvmOptions)));
+        } else {
+            LOGGER.log(Level.WARNING, "No config builder for task driver " + template.getDriver() + ", using the extra driver config only");
+        }
+
+        // Settings the builders don't know about, e.g. snapshotter options of lazily-pulled image formats
+        String extraDriverConfig = template.getExtraDriverConfig();
+        if (extraDriverConfig != null && !extraDriverConfig.trim().isEmpty()) {
+            JsonObject extra = JsonParser.parseString(extraDriverConfig).getAsJsonObject();
+            for (Map.Entry<String, JsonElement> entry : extra.entrySet()) {
+                driverConfig.put(entry.getKey(), entry.getValue());
             }
         }
 
         return driverConfig;
     }
 
+    private Artifact[] buildWorkerArtifacts(NomadCloud cloud, NomadWorkerTemplate template) {
+        if (template.isAgentJarBundled()) {
+            return new Artifact[0];
+        }
+
+        String source = cloud.getWorkerSource();
+        String checksum = cloud.getWorkerSourceChecksum();
+
+        Map<String, String> getterOptions = null;
+        if (checksum != null) {
+            getterOptions = new HashMap<>();
+            getterOptions.put("checksum", checksum);
+        }
+
+        // Whatever the source is named, e.g. a content-addressed mirror, the drivers run /local/slave.jar
+        Artifact artifact = new Artifact(source, getterOptions, "local/slave.jar");
+        artifact.setGetterMode("file");
+        return new Artifact[]{artifact};
+    }
+
     String buildWorkerJob(
             String name,
             String secret,
             NomadCloud cloud,
             NomadWorkerTemplate template
+    ) {
+        return buildWorkerJob(name, secret, cloud, template, new WorkerOverrides());
+    }
+
+    String buildWorkerJob(
+            String name,
+            String secret,
+            NomadCloud cloud,
+            NomadWorkerTemplate template,
+            WorkerOverrides overrides
     ) {
         PortGroup portGroup = new PortGroup(template.getPorts());
         Network network = new Network(1, portGroup.getPorts());
@@ -249,21 +586,37 @@ public final class NomadApi {
         ArrayList<Network> networks = new ArrayList<>(1);
         networks.add(network);
 
+        int cpu = overrides.getCpu() != null ? overrides.getCpu() : template.getCpu();
+        int memory = overrides.getMemory() != null ? overrides.getMemory() : template.getMemory();
+
+        // Recommendations are based on workers of the template's size, adaptively sized workers keep their size
+        if (template.isAutoRightSize() && overrides.getNumExecutors() == null) {
+            ResourceUsageStats.TemplateUsage usage = ResourceUsageStats.get().find(template.getPrefix());
+            if (usage != null && usage.getRecommendedCpu() > 0 && usage.getRecommendedMemory() > 0) {
+                cpu = usage.getRecommendedCpu();
+                // Less memory than configured risks the task being OOM-killed on an unusual build
+                memory = Math.max(usage.getRecommendedMemory(), template.getMemory());
+            }
+        }
+
+        Resource resource = new Resource(cpu, memory, networks, devices);
+        if (template.getCores() > 0) {
+            // Reserved cores replace the CPU shares, Nomad rejects tasks asking for both
+            resource.setCPU(null);
+            resource.setCores(template.getCores());
+        }
+        if (template.getMemoryMax() > memory) {
+            resource.setMemoryMaxMB(template.getMemoryMax());
+        }
+
         Task task = new Task(
-                "jenkins-worker",
+                TASK_NAME,
                 template.getDriver(),
                 template.getSwitchUser(),
-                buildDriverConfig(name, secret, cloud, template),
-                new Resource(
-                        template.getCpu(),
-                        template.getMemory(),
-                        networks,
-                        devices
-                        ),
+                buildDriverConfig(name, secret, cloud, template, buildAgentJvmOptions(memory, template)),
+                resource,
                 new LogConfig(1, 10),
-                new Artifact[]{
-                        new Artifact(cloud.getWorkerUrl(), null, "/local/")
-                },
+                buildWorkerArtifacts(cloud, template),
                 new Vault(template.getVaultPolicies())
         );
 
@@ -275,20 +628,60 @@ public final class NomadApi {
                 new EphemeralDisk(template.getDisk(), false, false)
         );
 
+        String cacheVolume = overrides.getCacheVolume();
+        if (cacheVolume != null) {
+            boolean csi = "csi".equals(template.getCacheVolumeType());
+            taskGroup.setVolumes(Collections.singletonMap(CACHE_VOLUME, new VolumeRequest(
+                    CACHE_VOLUME,
+                    csi ? "csi" : "host",
+                    cacheVolume,
+                    false,
+                    csi ? "single-node-writer" : null,
+                    csi ? "file-system" : null
+            )));
+            task.setVolumeMounts(Collections.singletonList(new VolumeMount(CACHE_VOLUME, template.getCacheVolumeDestination(), false)));
+        }
+
         ConstraintGroup constraintGroup = new ConstraintGroup(template.getConstraints());
         List<Constraint> Constraints = constraintGroup.getConstraints();
 
+        AffinityGroup affinityGroup = new AffinityGroup(template.getAffinities());
+        List<Affinity> affinities = affinityGroup.getAffinities();
+
+        if (template.isPreferWarmNodes()) {
+            List<String> warmNodes = NodeLocality.get().recentNodes(template.getPrefix());
+            if (!warmNodes.isEmpty()) {
+                affinities.add(new Affinity("${node.unique.id}", "set_contains_any", StringUtils.join(warmNodes, ","), template.getWarmNodeWeight()));
+            }
+        }
+
+        SpreadGroup spreadGroup = new SpreadGroup(template.getSpreads());
+        List<Spread> spreads = spreadGroup.getSpreads();
+
         Job job = new Job(
                 name,
                 name,
                 template.getRegion(),
                 "batch",
-                template.getPriority(),
+                overrides.getPriority() != null ? overrides.getPriority() : template.getPriority(),
                 template.getDatacenters().split(","),
                 Constraints,
                 new TaskGroup[]{taskGroup}
         );
 
+        String namespace = cloud.namespaceOf(template);
+        if (StringUtils.isNotEmpty(namespace)) {
+            job.setNamespace(namespace);
+        }
+        if (!affinities.isEmpty()) {
+            job.setAffinities(affinities);
+        }
+        if (!spreads.isEmpty()) {
+            job.setSpreads(spreads);
+        }
+        job.setMeta(NomadJobMeta.of(cloud, template,
+                overrides.getNumExecutors() != null ? overrides.getNumExecutors() : template.getNumExecutors()));
+
         Gson gson = new GsonBuilder().disableHtmlEscaping().create();
         JsonObject jobJson = new JsonObject();
 
@@ -0,0 +1,151 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.CauseAction;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.Job;
+import hudson.model.ParametersAction;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.slaves.OfflineCause;
+import jenkins.model.CauseOfInterruption;
+import jenkins.model.InterruptedBuildAction;
+import jenkins.model.ParameterizedJobMixIn;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.nomad.Api.AllocationInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Requeues builds that failed because the Nomad allocation of the worker they ran on was lost.
+ * <p>
+ * Builds aborted by the {@link NomadAllocationWatcher} are requeued right away. Builds that failed before the
+ * allocation was reported lost, e.g. because the channel closed when the agent was OOM-killed, are requeued once
+ * Nomad confirms the allocation was lost. Builds failing while the channel is still open are left alone.
+ */
+@Extension
+public class NomadBuildRequeuer extends RunListener<Run<?, ?>> {
+
+    private static final Logger LOGGER = Logger.getLogger(NomadBuildRequeuer.class.getName());
+
+    private static final int CONFIRM_ATTEMPTS = 12;
+    private static final long CONFIRM_INTERVAL_SECONDS = 5;
+
+    private static final AtomicLong requeued = new AtomicLong();
+    private static final AtomicLong exhausted = new AtomicLong();
+
+    public static long getRequeued() {
+        return requeued.get();
+    }
+
+    /**
+     * @return the number of builds of lost allocations that were not requeued because they reached the maximum
+     */
+    public static long getExhausted() {
+        return exhausted.get();
+    }
+
+    @Override
+    public void onCompleted(Run<?, ?> run, TaskListener listener) {
+        Result result = run.getResult();
+        if (result == null || result.isBetterOrEqualTo(Result.UNSTABLE) || !(run.getParent() instanceof ParameterizedJobMixIn.ParameterizedJob)) {
+            return;
+        }
+
+        Executor executor = run.getExecutor();
+        Computer owner = executor != null ? executor.getOwner() : null;
+        if (!(owner instanceof NomadComputer)) {
+            return;
+        }
+        NomadComputer computer = (NomadComputer) owner;
+        NomadWorker worker = computer.getNode();
+        NomadWorkerTemplate template = worker != null ? worker.getTemplate() : null;
+        if (template == null || !template.isRequeueLostBuilds() || worker.getAllocationId() == null) {
+            return;
+        }
+
+        String lostAllocation = lostAllocation(run, computer);
+        if (lostAllocation != null) {
+            requeue(run, worker, template.getMaxRequeues(), lostAllocation);
+        } else if (result == Result.FAILURE && isChannelClosed(computer)) {
+            confirmAndRequeue(run, worker, template.getMaxRequeues(), 1);
+        }
+    }
+
+    private static String lostAllocation(Run<?, ?> run, NomadComputer computer) {
+        InterruptedBuildAction interrupted = run.getAction(InterruptedBuildAction.class);
+        if (interrupted != null) {
+            for (CauseOfInterruption cause : interrupted.getCauses()) {
+                if (cause instanceof NomadComputer.AllocationLost) {
+                    return ((NomadComputer.AllocationLost) cause).getAllocationId();
+                }
+            }
+        }
+        return computer.getLostAllocation();
+    }
+
+    /**
+     * @return whether the build failed because the channel to the worker closed, rather than by its own steps
+     */
+    private static boolean isChannelClosed(NomadComputer computer) {
+        return computer.getChannel() == null || computer.getOfflineCause() instanceof OfflineCause.ChannelTermination;
+    }
+
+    /**
+     * Asks Nomad for the status of the allocation the failed build ran on, for up to a minute as it takes a while
+     * until the client of a crashed node is considered down.
+     */
+    private static void confirmAndRequeue(Run<?, ?> run, NomadWorker worker, int maxRequeues, int attempt) {
+        Timer.get().schedule(() -> {
+            NomadCloud cloud = worker.getCloud();
+            if (cloud == null) {
+                return;
+            }
+            AllocationInfo allocation = cloud.nomad().getAllocation(worker.getAllocationId(), worker.getNamespace(), cloud.getNomadACL());
+            if (allocation != null && allocation.isLost()) {
+                requeue(run, worker, maxRequeues, allocation.getID());
+            } else if (attempt < CONFIRM_ATTEMPTS && (allocation == null || !"complete".equals(allocation.getClientStatus()))) {
+                confirmAndRequeue(run, worker, maxRequeues, attempt + 1);
+            }
+        }, CONFIRM_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void requeue(Run<?, ?> run, NomadWorker worker, int maxRequeues, String allocationId) {
+        NomadRequeueCause previous = run.getCause(NomadRequeueCause.class);
+        int attempt = previous != null ? previous.getAttempt() + 1 : 1;
+        ProvisioningJournal journal = ProvisioningJournal.get();
+
+        if (attempt > maxRequeues) {
+            exhausted.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Not requeueing " + run + " after its allocation " + allocationId + " was lost, it was already requeued " + maxRequeues + " times");
+            return;
+        }
+
+        List<Action> actions = new ArrayList<>();
+        actions.add(new CauseAction(new NomadRequeueCause(run, allocationId, attempt)));
+        ParametersAction parameters = run.getAction(ParametersAction.class);
+        if (parameters != null) {
+            actions.add(parameters);
+        }
+
+        Job<?, ?> job = run.getParent();
+        if (ParameterizedJobMixIn.scheduleBuild2(job, 0, actions.toArray(new Action[0])) == null) {
+            LOGGER.log(Level.WARNING, "Failed to requeue " + run + " after its allocation " + allocationId + " was lost");
+            return;
+        }
+
+        requeued.incrementAndGet();
+        LOGGER.log(Level.INFO, "Requeued " + run + " after its allocation " + allocationId + " was lost (attempt " + attempt + ")");
+        journal.record(ProvisioningJournal.Type.REQUEUED, worker.getCloudName(), worker.getTemplatePrefix(), worker.getNodeName(),
+                run.getFullDisplayName() + " requeued, attempt " + attempt + " of " + maxRequeues);
+    }
+}
@@ -5,28 +5,32 @@ import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.google.common.base.Strings;
 import hudson.Extension;
+import hudson.Util;
 import hudson.model.Descriptor;
 import hudson.model.Label;
 import hudson.model.Node;
 import hudson.security.ACL;
 import hudson.slaves.AbstractCloudImpl;
 import hudson.slaves.Cloud;
+import hudson.slaves.JNLPLauncher;
 import hudson.slaves.NodeProvisioner;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
-import jenkins.slaves.JnlpSlaveAgentProtocol;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.ResponseBody;
 import org.jenkinsci.plugins.nomad.Api.JobInfo;
 import org.jenkinsci.plugins.plaincredentials.StringCredentials;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.verb.POST;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,11 +50,25 @@ public class NomadCloud extends AbstractCloudImpl {
     private final Boolean prune;
     private String jenkinsUrl;
     private String jenkinsTunnel;
+    private boolean webSocket;
+    private boolean drainAware;
+    private boolean purgeJobs;
+    private boolean deferNodeRegistration;
+    private String namespace;
+    private boolean quotaAware;
+    private transient NomadQuotas quotas;
+    private transient ProvisioningPipeline pipeline;
     private String workerUrl;
     private int workerTimeout = 1;
+    private String workerChecksum;
+    private String workerMirrorPath;
+    private String workerMirrorUrl;
     private NomadApi nomad;
+    private transient String mirroredWorkerJar;
 
-    private int pending = 0;
+    // Updated from provisioning stages, timers, the reconciler and the recycler; not restored after a restart, where
+    // the reconciler counts the capacity of adopted workers again
+    private transient AtomicInteger pending;
 
     @DataBoundConstructor
     public NomadCloud(
@@ -81,6 +99,10 @@ public class NomadCloud extends AbstractCloudImpl {
         }
 
         readResolve();
+
+        for (NomadWorkerTemplate template : this.templates) {
+            NomadJobSpecs.prepareLater(this, template);
+        }
     }
 
     private static String secretFor(String credentialsId) {
@@ -100,18 +122,24 @@ public class NomadCloud extends AbstractCloudImpl {
 
     private Object readResolve() {
         nomad = new NomadApi(nomadUrl);
+        pending = new AtomicInteger();
 
         if (jenkinsUrl.equals("")) {
             jenkinsUrl = Jenkins.get().getRootUrl();
         }
 
         if (workerUrl.equals("")) {
-            workerUrl = jenkinsUrl + "jnlpJars/slave.jar";
+            workerUrl = defaultWorkerUrl();
         }
 
+        mirrorWorkerJar();
         return this;
     }
 
+    private String defaultWorkerUrl() {
+        return jenkinsUrl + "jnlpJars/slave.jar";
+    }
+
     @Override
     public Collection<NodeProvisioner.PlannedNode> provision(Label label, int excessWorkload) {
 
@@ -119,46 +147,137 @@ public class NomadCloud extends AbstractCloudImpl {
         final NomadWorkerTemplate template = getTemplate(label);
 
         if (template != null) {
-            if (getPrune())
-                pruneOrphanedWorkers(template);
+            if (getPrune()) {
+                // Provisioning goes on without pruning when Nomad can't list the jobs
+                try {
+                    pruneOrphanedWorkers(template);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to prune orphaned workers of template " + template.getPrefix(), e);
+                }
+            }
 
+            // A job specification is submitted as is, overrides of the generated job don't apply to it
+            boolean generated = template.getJobSpec() == null;
+
+            List<Integer> priorities = Collections.emptyList();
+            if (generated && template.isDynamicPriority()) {
+                priorities = NomadPrioritySource.prioritiesFor(label, template);
+            }
+
+            // A worker planned but not handed to the pipeline, its failure is recorded here
+            String unstarted = null;
             try {
+                NomadQuotas.Remaining quota = null;
+                if (quotaAware) {
+                    String quotaNamespace = namespaceOf(template);
+                    quota = getQuotas().remaining(quotaNamespace != null ? quotaNamespace : "default", template.getRegion());
+                }
+
+                int planned = 0;
                 while (excessWorkload > 0) {
                     LOGGER.log(Level.INFO, "Excess workload of " + excessWorkload + ", provisioning new Jenkins worker on Nomad cluster");
 
+                    WorkerOverrides overrides = new WorkerOverrides();
+                    int numExecutors = template.getNumExecutors();
+                    if (generated && template.isAdaptiveSizing()) {
+                        numExecutors = template.sizeFor(excessWorkload, overrides).getNumExecutors();
+                    }
+
+                    // Jobs beyond the quota would stay blocked until the worker timeout, report the shortfall instead
+                    int cpu = overrides.getCpu() != null ? overrides.getCpu() : template.getCpu();
+                    int memory = overrides.getMemory() != null ? overrides.getMemory() : template.getMemory();
+                    if (quota != null && !quota.reserve(cpu, memory)) {
+                        String shortfall = "Quota " + quota.getQuota() + " exhausted (remaining " + quota + "), "
+                                + excessWorkload + " executors not provisioned";
+                        LOGGER.log(Level.WARNING, "Template " + template.getPrefix() + ": " + shortfall);
+                        ProvisioningJournal.get().record(ProvisioningJournal.Type.QUOTA, name, template.getPrefix(), null, shortfall);
+                        break;
+                    }
+
                     final String workerName = template.createWorkerName();
-                    nodes.add(new NodeProvisioner.PlannedNode(
-                            workerName,
-                            NomadComputer.threadPoolForRemoting.submit(
-                                    new ProvisioningCallback(workerName, template, this)
-                            ), template.getNumExecutors()));
-                    excessWorkload -= template.getNumExecutors();
-                    pending += template.getNumExecutors();
+                    ProvisioningJournal.get().planned(name, template.getPrefix(), workerName, TimeUnit.MINUTES.toMillis(workerTimeout));
+                    unstarted = workerName;
+                    if (template.isAdaptiveRetention()) {
+                        AdaptiveRetention.get().forTemplate(template.getPrefix())
+                                .provisioning(TimeUnit.MINUTES.toMillis(template.getMaxIdleMinutes()));
+                    }
+                    // The first workers go to the items with the highest priority
+                    if (planned < priorities.size()) {
+                        overrides.priority(priorities.get(planned));
+                    }
+                    List<String> cacheVolumes = template.getCacheVolumePool();
+                    if (generated && !cacheVolumes.isEmpty()) {
+                        overrides.cacheVolume(CacheVolumePool.get().claim(template.getPrefix(), cacheVolumes, workerName));
+                    }
+
+                    CompletableFuture<Node> future = getPipeline().start(workerName, template, overrides, numExecutors);
+                    if (future == null) {
+                        LOGGER.log(Level.WARNING, "Provisioning pipeline of cloud " + name + " is full, " + excessWorkload + " executors not provisioned");
+                        ProvisioningJournal.get().record(ProvisioningJournal.Type.FAILED, name, template.getPrefix(), workerName, "Provisioning pipeline is full");
+                        unstarted = null;
+                        if (overrides.getCacheVolume() != null) {
+                            CacheVolumePool.get().release(template.getPrefix(), overrides.getCacheVolume(), workerName);
+                        }
+                        break;
+                    }
+                    unstarted = null;
+                    nodes.add(new NodeProvisioner.PlannedNode(workerName, future, numExecutors));
+                    excessWorkload -= numExecutors;
+                    planned += numExecutors;
+                    pending.addAndGet(numExecutors);
                 }
                 return nodes;
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Unable to schedule new Jenkins worker on Nomad cluster, message: " + e.getMessage());
+                if (unstarted != null) {
+                    ProvisioningJournal.get().record(ProvisioningJournal.Type.FAILED, name, template.getPrefix(), unstarted, "Provisioning failed: " + e.getMessage());
+                }
             }
         }
 
         return Collections.emptyList();
     }
 
+    /**
+     * Stops the running jobs of the template's workers that are not registered, e.g. after a failed start. Only the
+     * jobs of this controller and cloud are listed, so controllers sharing a prefix leave each other's workers alone.
+     * Workers still being provisioned may run before their node is registered and are left alone as well.
+     */
     private void pruneOrphanedWorkers(NomadWorkerTemplate template) {
-        JobInfo[] nomadWorkers = this.nomad.getRunningWorkers(template.getPrefix(), getNomadACL());
+        JobInfo[] nomadWorkers = NomadJobMeta.list(this, template.getPrefix(), namespaceOf(template), true);
+        for (JobInfo worker : orphansOf(nomadWorkers, jobNames(), ProvisioningJournal.get())) {
+            LOGGER.log(Level.FINE, "Found Orphaned Node: " + worker.getID());
+            this.nomad.stopWorker(worker.getID(), namespaceOf(template), getNomadACL(), purgeJobs);
+        }
+    }
 
-        for (JobInfo worker : nomadWorkers) {
+    /**
+     * @return the running jobs that are neither registered nor of a worker of this cloud in flight
+     */
+    List<JobInfo> orphansOf(JobInfo[] jobs, Set<String> registered, ProvisioningJournal journal) {
+        List<JobInfo> orphans = new ArrayList<>();
+        for (JobInfo worker : jobs) {
             if (worker.getStatus().equalsIgnoreCase("running")) {
                 LOGGER.log(Level.FINE, "Found worker: " + worker.getName() + " - " + worker.getID());
-                Node node = Jenkins.get().getNode(worker.getName());
-
-                if (node == null) {
-                    LOGGER.log(Level.FINE, "Found Orphaned Node: " + worker.getID());
-                    this.nomad.stopWorker(worker.getID(), getNomadACL());
+                if (!registered.contains(worker.getName()) && !journal.isInFlight(name, worker.getName())) {
+                    orphans.add(worker);
                 }
             }
         }
+        return orphans;
+    }
 
+    /**
+     * @return the Nomad jobs of the registered workers, which are not named after the worker once recycled
+     */
+    static Set<String> jobNames() {
+        Set<String> jobs = new HashSet<>();
+        for (Node node : Jenkins.get().getNodes()) {
+            if (node instanceof NomadWorker) {
+                jobs.add(((NomadWorker) node).getJobName());
+            }
+        }
+        return jobs;
     }
 
     // Find the correct template for job
@@ -174,6 +293,15 @@ public class NomadCloud extends AbstractCloudImpl {
         return null;
     }
 
+    public NomadWorkerTemplate getTemplateByPrefix(String prefix) {
+        for (NomadWorkerTemplate t : templates) {
+            if (t.getPrefix() != null && t.getPrefix().equals(prefix)) {
+                return t;
+            }
+        }
+        return null;
+    }
+
     @Override
     public boolean canProvision(Label label) {
         return Optional.ofNullable(getTemplate(label)).isPresent();
@@ -204,6 +332,81 @@ public class NomadCloud extends AbstractCloudImpl {
         this.workerUrl = workerUrl;
     }
 
+    public String getWorkerChecksum() {
+        return workerChecksum;
+    }
+
+    @DataBoundSetter
+    public void setWorkerChecksum(String workerChecksum) {
+        this.workerChecksum = Util.fixEmptyAndTrim(workerChecksum);
+    }
+
+    public String getWorkerMirrorPath() {
+        return workerMirrorPath;
+    }
+
+    @DataBoundSetter
+    public void setWorkerMirrorPath(String workerMirrorPath) {
+        this.workerMirrorPath = Util.fixEmptyAndTrim(workerMirrorPath);
+        mirrorWorkerJar();
+    }
+
+    public String getWorkerMirrorUrl() {
+        return workerMirrorUrl;
+    }
+
+    @DataBoundSetter
+    public void setWorkerMirrorUrl(String workerMirrorUrl) {
+        this.workerMirrorUrl = Util.fixEmptyAndTrim(workerMirrorUrl);
+    }
+
+    /**
+     * Copies the controller's remoting jar to the mirror under a content-addressed name, when the cloud is
+     * configured or loaded, so provisioning never waits for the copy.
+     */
+    private void mirrorWorkerJar() {
+        mirroredWorkerJar = null;
+        if (workerMirrorPath == null) {
+            return;
+        }
+        try {
+            mirroredWorkerJar = AgentJar.mirror(workerMirrorPath);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to mirror worker jar to " + workerMirrorPath + ", workers download " + workerUrl, e);
+        }
+    }
+
+    /**
+     * Source the workers download the agent jar from. When a mirror is configured, the controller does not serve
+     * the jar to every worker.
+     */
+    public String getWorkerSource() {
+        if (mirroredWorkerJar != null && workerMirrorUrl != null) {
+            return Util.ensureEndsWith(workerMirrorUrl, "/") + mirroredWorkerJar;
+        }
+        return workerUrl;
+    }
+
+    /**
+     * Checksum the workers' artifact is pinned to. An explicit checksum always wins; otherwise the jar is only
+     * pinned when it is known to be the controller's own remoting jar (served directly or through the mirror).
+     *
+     * @return the go-getter checksum or <code>null</code> if the artifact is not pinned
+     */
+    public String getWorkerSourceChecksum() {
+        if (workerChecksum != null) {
+            return workerChecksum;
+        }
+        if ((mirroredWorkerJar != null && workerMirrorUrl != null) || workerUrl.equals(defaultWorkerUrl())) {
+            try {
+                return AgentJar.checksum();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to compute the worker jar checksum", e);
+            }
+        }
+        return null;
+    }
+
     public int getWorkerTimeout() {
         return workerTimeout;
     }
@@ -236,7 +439,11 @@ public class NomadCloud extends AbstractCloudImpl {
     }
 
     public int getPending() {
-        return pending;
+        return pending.get();
+    }
+
+    void addPending(int executors) {
+        pending.addAndGet(executors);
     }
 
     public String getJenkinsTunnel() {
@@ -247,6 +454,82 @@ public class NomadCloud extends AbstractCloudImpl {
         this.jenkinsTunnel = jenkinsTunnel;
     }
 
+    public boolean isWebSocket() {
+        return webSocket;
+    }
+
+    @DataBoundSetter
+    public void setWebSocket(boolean webSocket) {
+        this.webSocket = webSocket;
+    }
+
+    /**
+     * @return the namespace the template's workers run in: the template's own, or else the cloud's
+     */
+    public String namespaceOf(NomadWorkerTemplate template) {
+        String templateNamespace = template.getNamespace();
+        return templateNamespace != null && !templateNamespace.isEmpty() ? templateNamespace : namespace;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @DataBoundSetter
+    public void setNamespace(String namespace) {
+        this.namespace = Util.fixEmptyAndTrim(namespace);
+    }
+
+    public boolean isQuotaAware() {
+        return quotaAware;
+    }
+
+    @DataBoundSetter
+    public void setQuotaAware(boolean quotaAware) {
+        this.quotaAware = quotaAware;
+    }
+
+    public synchronized ProvisioningPipeline getPipeline() {
+        if (pipeline == null) {
+            pipeline = new ProvisioningPipeline(this);
+        }
+        return pipeline;
+    }
+
+    private synchronized NomadQuotas getQuotas() {
+        if (quotas == null) {
+            quotas = new NomadQuotas(this);
+        }
+        return quotas;
+    }
+
+    public boolean isDeferNodeRegistration() {
+        return deferNodeRegistration;
+    }
+
+    @DataBoundSetter
+    public void setDeferNodeRegistration(boolean deferNodeRegistration) {
+        this.deferNodeRegistration = deferNodeRegistration;
+    }
+
+    public boolean isDrainAware() {
+        return drainAware;
+    }
+
+    @DataBoundSetter
+    public void setDrainAware(boolean drainAware) {
+        this.drainAware = drainAware;
+    }
+
+    public boolean isPurgeJobs() {
+        return purgeJobs;
+    }
+
+    @DataBoundSetter
+    public void setPurgeJobs(boolean purgeJobs) {
+        this.purgeJobs = purgeJobs;
+    }
+
     public List<NomadWorkerTemplate> getTemplates() {
         return Collections.unmodifiableList(templates);
     }
@@ -285,6 +568,24 @@ public class NomadCloud extends AbstractCloudImpl {
             }
         }
 
+        /**
+         * Enables preemption of batch jobs in the scheduler configuration, so workers of templates with dynamic
+         * priority can preempt lower priority workers.
+         */
+        @POST
+        public FormValidation doEnableBatchPreemption(@QueryParameter("nomadUrl") String nomadUrl,
+                                                      @QueryParameter("nomadACLCredentialsId") String nomadACLCredentialsId) {
+            Objects.requireNonNull(Jenkins.get()).checkPermission(Jenkins.ADMINISTER);
+            try {
+                if (new NomadApi(nomadUrl).enableBatchPreemption(secretFor(nomadACLCredentialsId))) {
+                    return FormValidation.ok("Batch preemption enabled.");
+                }
+                return FormValidation.ok("Batch preemption was already enabled.");
+            } catch (IOException | RuntimeException e) {
+                return FormValidation.error("Failed to enable batch preemption: " + e.getMessage());
+            }
+        }
+
         @POST
         public FormValidation doCheckName(@QueryParameter String name) {
             Objects.requireNonNull(Jenkins.get()).checkPermission(Jenkins.ADMINISTER);
@@ -310,67 +611,31 @@ public class NomadCloud extends AbstractCloudImpl {
         }
     }
 
-    private class ProvisioningCallback implements Callable<Node> {
-
-        String workerName;
-        NomadWorkerTemplate template;
-        NomadCloud cloud;
-
-        public ProvisioningCallback(String workerName, NomadWorkerTemplate template, NomadCloud cloud) {
-            this.workerName = workerName;
-            this.template = template;
-            this.cloud = cloud;
+    private static NomadRetentionStrategy retentionStrategyFor(NomadWorkerTemplate template) {
+        NomadRetentionStrategy strategy = new NomadRetentionStrategy(template.getIdleTerminationInMinutes());
+        if (template.isAdaptiveRetention()) {
+            strategy.adaptive(template.getPrefix(), template.getMinIdleMinutes(), template.getMaxIdleMinutes());
         }
+        return strategy;
+    }
 
-        public Node call() throws Exception {
-            final NomadWorker worker = new NomadWorker(
-                    workerName,
-                    name,
-                    template,
-                    template.getLabels(),
-                    new NomadRetentionStrategy(template.getIdleTerminationInMinutes()),
-                    Collections.emptyList()
-            );
-            Jenkins.get().addNode(worker);
-
-            // Support for Jenkins security
-            String jnlpSecret = "";
-            if (Jenkins.get().isUseSecurity()) {
-                jnlpSecret = JnlpSlaveAgentProtocol.SLAVE_SECRET.mac(workerName);
-            }
-
-            LOGGER.log(Level.INFO, "Asking Nomad to schedule new Jenkins worker");
-            nomad.startWorker(cloud, workerName, getNomadACL(), jnlpSecret, template);
-
-            // Check scheduling success
-            Callable<Boolean> callableTask = () -> {
-                try {
-                    LOGGER.log(Level.INFO, "Worker scheduled, waiting for connection");
-                    Objects.requireNonNull(worker.toComputer()).waitUntilOnline();
-                } catch (InterruptedException e) {
-                    LOGGER.log(Level.SEVERE, "Waiting for connection was interrupted");
-                    return false;
-                }
-                return true;
-            };
-
-            // Schedule a worker and wait for the computer to come online
-            ExecutorService executorService = Executors.newCachedThreadPool();
-            Future<Boolean> future = executorService.submit(callableTask);
-
-            try {
-                future.get(cloud.workerTimeout, TimeUnit.MINUTES);
-                LOGGER.log(Level.INFO, "Connection established");
-            } catch (Exception ex) {
-                LOGGER.log(Level.SEVERE, "Worker computer did not come online within " + workerTimeout + " minutes, terminating worker" + worker);
-                worker.terminate();
-                throw new RuntimeException("Timed out waiting for agent to start up. Timeout: " + workerTimeout + " minutes.");
-            } finally {
-                future.cancel(true);
-                executorService.shutdown();
-                pending -= template.getNumExecutors();
-            }
-            return worker;
+    NomadWorker newWorker(String workerName, NomadWorkerTemplate template, int numExecutors) throws Descriptor.FormException, IOException {
+        NomadWorker worker = new NomadWorker(
+                workerName,
+                name,
+                template,
+                numExecutors,
+                template.getLabels(),
+                retentionStrategyFor(template),
+                Collections.emptyList()
+        );
+        if (webSocket) {
+            // Also makes the served JNLP file carry -webSocket for the java and raw_exec drivers
+            JNLPLauncher launcher = new JNLPLauncher(false);
+            launcher.setWebSocket(true);
+            worker.setLauncher(launcher);
         }
+        worker.setNamespace(Util.fixEmpty(namespaceOf(template)));
+        return worker;
     }
 }
@@ -1,9 +1,18 @@
 package org.jenkinsci.plugins.nomad;
 
+import hudson.model.Computer;
 import hudson.model.Executor;
 import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.labels.LabelAtom;
 import hudson.slaves.AbstractCloudComputer;
+import jenkins.model.CauseOfInterruption;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -11,17 +20,39 @@ public class NomadComputer extends AbstractCloudComputer<NomadWorker> {
 
     private static final Logger LOGGER = Logger.getLogger(NomadComputer.class.getName());
 
+    private static final int IDLE_CHECKS = 10;
+    private static final long IDLE_CHECK_INTERVAL = 200;
+
     private final Boolean reusable;
+    private final String templatePrefix;
+
+    // Peak usage since the computer last started a build while idle
+    private volatile long peakCpu = -1;
+    private volatile long peakMemory = -1;
+
+    private volatile boolean draining;
+    private volatile boolean terminating;
+    private volatile String lostAllocation;
+
+    // When the last busy executor completed its task, -1 before the first task
+    private volatile long lastTaskCompleted = -1;
 
     public NomadComputer(NomadWorker worker) {
         super(worker);
 
         this.reusable = worker.getReusable();
+        this.templatePrefix = worker.getTemplatePrefix();
     }
 
     @Override
     public void taskAccepted(Executor executor, Queue.Task task) {
         super.taskAccepted(executor, task);
+        AdaptiveRetention.get().forTemplate(templatePrefix).arrival();
+        if (countBusy() <= 1) {
+            peakCpu = -1;
+            peakMemory = -1;
+            recordIdle();
+        }
         if (!reusable) {
             setAcceptingTasks(false);
         }
@@ -31,18 +62,230 @@ public class NomadComputer extends AbstractCloudComputer<NomadWorker> {
     @Override
     public void taskCompleted(Executor executor, Queue.Task task, long durationMS) {
         super.taskCompleted(executor, task, durationMS);
+        attachUsage(executor);
+        recordCompletion(durationMS);
+        if (draining || !reusable) {
+            terminateWhenIdle();
+        }
         LOGGER.log(Level.INFO, " Computer " + this + ": task completed");
     }
 
     @Override
     public void taskCompletedWithProblems(Executor executor, Queue.Task task, long durationMS, Throwable problems) {
         super.taskCompletedWithProblems(executor, task, durationMS, problems);
+        attachUsage(executor);
+        recordCompletion(durationMS);
+        if (draining || !reusable) {
+            terminateWhenIdle();
+        }
         LOGGER.log(Level.WARNING, " Computer " + this + " task completed with problems");
     }
 
+    @Override
+    protected void onRemoved() {
+        super.onRemoved();
+        long connected = getConnectTime();
+        if (connected > 0) {
+            lifecycle().getLifetime().record(System.currentTimeMillis() - connected);
+        }
+    }
+
+    private WorkerLifecycleStats.TemplateLifecycle lifecycle() {
+        return WorkerLifecycleStats.get().forTemplate(templatePrefix);
+    }
+
+    /**
+     * Records how long the idle computer waited for the task it just accepted.
+     */
+    private void recordIdle() {
+        long now = System.currentTimeMillis();
+        if (lastTaskCompleted >= 0) {
+            lifecycle().getIdleTime().record(now - lastTaskCompleted);
+            AdaptiveRetention.get().forTemplate(templatePrefix).reused(now - lastTaskCompleted);
+        } else if (getConnectTime() > 0) {
+            lifecycle().getTimeToFirstTask().record(now - getConnectTime());
+        }
+    }
+
+    private void recordCompletion(long durationMS) {
+        lifecycle().getBuildDuration().record(durationMS);
+        // The completing executor still counts as busy
+        if (countBusy() <= 1) {
+            lastTaskCompleted = System.currentTimeMillis();
+        }
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Called when the Nomad client node running the worker is drained or marked ineligible.
+     * <p>
+     * The worker stops accepting tasks and replacement capacity is requested right away. Builds in progress are
+     * allowed to finish: Nomad keeps batch allocations running until the drain deadline, and the worker is
+     * terminated as soon as it is idle so the drain does not have to wait for the deadline.
+     */
+    void drain(String nodeName) {
+        if (draining) {
+            terminateWhenIdle();
+            return;
+        }
+        draining = true;
+        setAcceptingTasks(false);
+
+        NomadWorker worker = getNode();
+        LOGGER.log(Level.INFO, "Nomad node " + nodeName + " of computer " + this + " is draining, no longer accepting tasks");
+        if (worker != null) {
+            ProvisioningJournal.get().record(ProvisioningJournal.Type.DRAINING, worker.getCloudName(), worker.getTemplatePrefix(),
+                    getName(), "Node " + nodeName + " is draining, " + countBusy() + " busy executors");
+        }
+        suggestReview(worker);
+
+        terminateWhenIdle();
+    }
+
+    /**
+     * @return the ID of the worker's allocation if Nomad reported it lost, <code>null</code> otherwise
+     */
+    public String getLostAllocation() {
+        return lostAllocation;
+    }
+
+    /**
+     * Called when the worker's allocation was lost. The builds still running on it can't complete, so they are
+     * aborted right away instead of waiting for the channel to time out.
+     */
+    void allocationLost(String allocationId, String reason) {
+        if (lostAllocation != null) {
+            return;
+        }
+        lostAllocation = allocationId;
+        setAcceptingTasks(false);
+
+        NomadWorker worker = getNode();
+        LOGGER.log(Level.WARNING, "Allocation " + allocationId + " of computer " + this + " was lost: " + reason);
+        if (worker != null) {
+            ProvisioningJournal.get().record(ProvisioningJournal.Type.LOST, worker.getCloudName(), worker.getTemplatePrefix(),
+                    getName(), "Allocation " + allocationId + " " + reason + ", " + countBusy() + " busy executors");
+        }
+
+        for (Executor executor : getAllExecutors()) {
+            if (executor.isBusy()) {
+                executor.interrupt(Result.ABORTED, new AllocationLost(allocationId, reason));
+            }
+        }
+        terminateWhenIdle();
+    }
+
+    /**
+     * Terminates the worker in the background once all its executors are idle, e.g. a single-use worker right
+     * after its build. Executors are still busy while their task completes, so idleness is checked a few times.
+     * The freed capacity is handed back to the provisioners right away instead of at their next periodic review.
+     */
+    void terminateWhenIdle() {
+        terminateWhenIdle(IDLE_CHECKS);
+    }
+
+    private void terminateWhenIdle(int checks) {
+        Timer.get().schedule(() -> {
+            NomadWorker worker = getNode();
+            if (worker == null || terminating) {
+                return;
+            }
+            if (!isIdle()) {
+                if (checks > 1) {
+                    terminateWhenIdle(checks - 1);
+                }
+                return;
+            }
+            terminating = true;
+            setAcceptingTasks(false);
+            // Deregistering the job is a remote call, keep it off the shared timer threads
+            Computer.threadPoolForRemoting.submit(() -> {
+                try {
+                    if (!draining && lostAllocation == null && NomadAllocationRecycler.canRecycle(worker)
+                            && NomadAllocationRecycler.recycle(this, worker)) {
+                        LOGGER.log(Level.INFO, "Recycled the allocation of idle computer " + this);
+                        return;
+                    }
+                    LOGGER.log(Level.INFO, "Terminating idle computer " + this);
+                    worker.terminate();
+                    suggestReview(worker);
+                } catch (InterruptedException | IOException e) {
+                    terminating = false;
+                    LOGGER.log(Level.WARNING, "Failed to terminate " + this, e);
+                }
+            });
+        }, IDLE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private static void suggestReview(NomadWorker worker) {
+        if (worker != null) {
+            for (LabelAtom label : worker.getAssignedLabels()) {
+                label.nodeProvisioner.suggestReviewNow();
+            }
+        }
+        Jenkins.get().unlabeledNodeProvisioner.suggestReviewNow();
+    }
+
+    /**
+     * Records a resource usage sample of the worker's allocation taken while it was running builds.
+     */
+    void recordUsage(long cpuMHz, long memoryMB) {
+        NomadWorker worker = getNode();
+        if (worker == null || cpuMHz < 0 || memoryMB < 0) {
+            return;
+        }
+
+        ResourceUsageStats.get().forTemplate(worker.getTemplatePrefix()).record(cpuMHz, memoryMB);
+        peakCpu = Math.max(peakCpu, cpuMHz);
+        peakMemory = Math.max(peakMemory, memoryMB);
+    }
+
+    private void attachUsage(Executor executor) {
+        NomadWorker worker = getNode();
+        Queue.Executable executable = executor.getCurrentExecutable();
+        if (worker == null || peakCpu < 0 || !(executable instanceof Run)) {
+            return;
+        }
+
+        Run<?, ?> run = (Run<?, ?>) executable;
+        run.addAction(new NomadResourceUsageAction(getName(), worker.getTemplatePrefix(), peakCpu, peakMemory));
+        try {
+            run.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save resource usage of " + run, e);
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("%s (worker: %s)", getName(), getNode());
     }
 
+    /**
+     * Records that a build was aborted because the allocation of the worker it ran on was lost.
+     */
+    public static final class AllocationLost extends CauseOfInterruption {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String allocationId;
+        private final String reason;
+
+        AllocationLost(String allocationId, String reason) {
+            this.allocationId = allocationId;
+            this.reason = reason;
+        }
+
+        public String getAllocationId() {
+            return allocationId;
+        }
+
+        @Override
+        public String getShortDescription() {
+            return "Nomad allocation " + allocationId + " " + reason;
+        }
+    }
 }
@@ -0,0 +1,185 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.Util;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the <code>config</code> stanza of the worker task for one Nomad task driver.
+ * <p>
+ * The builder is chosen by the driver of the template, so other plugins can add drivers without touching
+ * how the rest of the job is built.
+ */
+public abstract class NomadDriverConfigBuilder implements ExtensionPoint {
+
+    /**
+     * @return the name of the Nomad task driver, e.g. <code>docker</code>
+     */
+    @Nonnull
+    public abstract String getDriver();
+
+    @Nonnull
+    public abstract Map<String, Object> build(@Nonnull Context context);
+
+    /**
+     * Deferred node registration relies on the agent retrying to connect until its node is registered. Agents
+     * reading the JNLP file of their node exit right away when it does not exist yet.
+     *
+     * @return whether the agent of the template keeps retrying to connect
+     */
+    public boolean isRetryingConnection(@Nonnull NomadWorkerTemplate template) {
+        return false;
+    }
+
+    public static List<NomadDriverConfigBuilder> all() {
+        return ExtensionList.lookup(NomadDriverConfigBuilder.class);
+    }
+
+    @CheckForNull
+    public static NomadDriverConfigBuilder forDriver(String driver) {
+        return forDriver(driver, all());
+    }
+
+    @CheckForNull
+    static NomadDriverConfigBuilder forDriver(String driver, Iterable<? extends NomadDriverConfigBuilder> builders) {
+        for (NomadDriverConfigBuilder builder : builders) {
+            if (builder.getDriver().equals(driver)) {
+                return builder;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Everything known about the worker when its task is built.
+     */
+    public static final class Context {
+
+        private final String workerName;
+        private final String secret;
+        private final NomadCloud cloud;
+        private final NomadWorkerTemplate template;
+        private final List<String> jvmOptions;
+
+        Context(String workerName, String secret, NomadCloud cloud, NomadWorkerTemplate template, List<String> jvmOptions) {
+            this.workerName = workerName;
+            this.secret = secret;
+            this.cloud = cloud;
+            this.template = template;
+            this.jvmOptions = Collections.unmodifiableList(jvmOptions);
+        }
+
+        public String getWorkerName() {
+            return workerName;
+        }
+
+        /**
+         * @return the JNLP secret of the worker, empty if Jenkins is not secured
+         */
+        public String getSecret() {
+            return secret;
+        }
+
+        public NomadCloud getCloud() {
+            return cloud;
+        }
+
+        public NomadWorkerTemplate getTemplate() {
+            return template;
+        }
+
+        /**
+         * @return the JVM options keeping the agent within the resources reserved for it
+         */
+        public List<String> getJvmOptions() {
+            return jvmOptions;
+        }
+
+        /**
+         * @return the path of the agent jar in the task, either bundled with the image or downloaded as artifact
+         */
+        public String getAgentJar(String downloaded) {
+            return template.isAgentJarBundled() ? template.getAgentJarPath() : downloaded;
+        }
+
+        /**
+         * @return the arguments connecting an agent through the JNLP file of the worker
+         */
+        public List<String> getJnlpArgs() {
+            List<String> args = new ArrayList<>();
+            args.add("-jnlpUrl");
+            args.add(Util.ensureEndsWith(cloud.getJenkinsUrl(), "/") + "computer/" + workerName + "/worker-agent.jnlp");
+
+            // java -cp /local/slave.jar [options...] <secret key> <agent name>
+            if (!secret.isEmpty()) {
+                args.add("-secret");
+                args.add(secret);
+            }
+            return args;
+        }
+
+        /**
+         * @return the arguments of <code>hudson.remoting.jnlp.Main</code>, for images that can't reach the JNLP file
+         */
+        public List<String> getHeadlessArgs() {
+            List<String> args = new ArrayList<>();
+            args.add("-headless");
+            args.addAll(getConnectionArgs());
+
+            // java -cp /local/slave.jar [options...] <secret key> <agent name>
+            if (!secret.isEmpty()) {
+                args.add(secret);
+            }
+            args.add(workerName);
+            return args;
+        }
+
+        /**
+         * @return the arguments of <code>hudson.remoting.jnlp.Main</code> telling it where and how to connect
+         */
+        public List<String> getConnectionArgs() {
+            List<String> args = new ArrayList<>();
+
+            if (!cloud.getJenkinsUrl().isEmpty()) {
+                args.add("-url");
+                args.add(cloud.getJenkinsUrl());
+            }
+
+            if (cloud.isWebSocket()) {
+                // Connect through the HTTP(S) endpoint of the controller instead of the TCP agent port
+                args.add("-webSocket");
+            } else if (!cloud.getJenkinsTunnel().isEmpty()) {
+                args.add("-tunnel");
+                args.add(cloud.getJenkinsTunnel());
+            }
+
+            if (!template.getRemoteFs().isEmpty()) {
+                args.add("-workDir");
+                args.add(Util.ensureEndsWith(template.getRemoteFs(), "/"));
+            }
+            return args;
+        }
+
+        /**
+         * @return the registry credentials of the template, <code>null</code> if it has none
+         */
+        @CheckForNull
+        public Map<String, String> getRegistryAuth() {
+            if (template.getUsername() == null || template.getUsername().isEmpty()) {
+                return null;
+            }
+            Map<String, String> auth = new HashMap<>();
+            auth.put("username", template.getUsername());
+            auth.put("password", template.getPassword().getPlainText());
+            return auth;
+        }
+    }
+}
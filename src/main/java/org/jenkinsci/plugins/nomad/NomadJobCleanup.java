@@ -0,0 +1,90 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import hudson.slaves.Cloud;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.nomad.Api.JobInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Lists the jobs of each worker template to keep {@link NomadJobTable} current, and purges the dead jobs of clouds
+ * that purge worker jobs. Only jobs tagged by this controller and cloud are listed. Jobs deregistered without purge,
+ * e.g. before the option was enabled or by a restart, would otherwise stay in the state of the cluster until its
+ * garbage collection.
+ */
+@Extension
+public class NomadJobCleanup extends AsyncPeriodicWork {
+
+    private static final long INTERVAL = TimeUnit.MINUTES.toMillis(Long.getLong(NomadJobCleanup.class.getName() + ".intervalMinutes", 5));
+
+    public NomadJobCleanup() {
+        super("Nomad job cleanup");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return INTERVAL;
+    }
+
+    @Override
+    protected Level getNormalLoggingLevel() {
+        return Level.FINE;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        for (Cloud c : Jenkins.get().clouds) {
+            if (!(c instanceof NomadCloud)) {
+                continue;
+            }
+            NomadCloud cloud = (NomadCloud) c;
+            for (NomadWorkerTemplate template : cloud.getTemplates()) {
+                String prefix = template.getPrefix();
+                if (prefix == null || prefix.isEmpty()) {
+                    continue;
+                }
+                try {
+                    cleanup(cloud, template, listener);
+                } catch (RuntimeException e) {
+                    listener.error("Failed to clean up the jobs of template " + prefix + " of cloud " + cloud.name + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void cleanup(NomadCloud cloud, NomadWorkerTemplate template, TaskListener listener) {
+        String namespace = cloud.namespaceOf(template);
+        JobInfo[] listed = NomadJobMeta.list(cloud, template.getPrefix() + "-", namespace, false);
+
+        // Jobs of templates whose prefix extends this one are counted for their own template
+        List<JobInfo> jobs = new ArrayList<>();
+        for (JobInfo job : listed) {
+            if (NomadWorkerReconciler.templateOf(cloud, job.getName()) == template) {
+                jobs.add(job);
+            }
+        }
+
+        int purged = 0;
+        if (cloud.isPurgeJobs()) {
+            Set<String> registered = NomadCloud.jobNames();
+            for (JobInfo job : jobs) {
+                if ("dead".equalsIgnoreCase(job.getStatus()) && !registered.contains(job.getName())) {
+                    cloud.nomad().stopWorker(job.getID(), namespace, cloud.getNomadACL(), true);
+                    purged++;
+                }
+            }
+            if (purged > 0) {
+                listener.getLogger().println("Purged " + purged + " dead jobs of template " + template.getPrefix() + " of cloud " + cloud.name);
+            }
+        }
+
+        NomadJobTable.get().forTemplate(cloud.name, template.getPrefix()).listed(jobs, purged);
+    }
+}
@@ -0,0 +1,138 @@
+package org.jenkinsci.plugins.nomad;
+
+import com.google.gson.Gson;
+import hudson.Util;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.nomad.Api.JobInfo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>Meta</code> a worker job is tagged with, and the filter expressions selecting the jobs of a cloud by it.
+ * <p>
+ * Listing jobs by prefix alone returns the jobs of every controller using the same prefix on the cluster, dead ones
+ * included. Nomad evaluates the filter while listing, so only the jobs of this controller and cloud are returned.
+ */
+final class NomadJobMeta {
+
+    static final String CONTROLLER = "jenkins_controller";
+    static final String CLOUD = "jenkins_cloud";
+    static final String TEMPLATE = "jenkins_template";
+    static final String EXECUTORS = "jenkins_executors";
+
+    private static volatile String controllerId;
+
+    private NomadJobMeta() {
+    }
+
+    static Map<String, String> of(NomadCloud cloud, NomadWorkerTemplate template) {
+        Map<String, String> meta = new LinkedHashMap<>();
+        meta.put(CONTROLLER, controllerId());
+        meta.put(CLOUD, Util.fixNull(cloud.name));
+        meta.put(TEMPLATE, Util.fixNull(template.getPrefix()));
+        return meta;
+    }
+
+    /**
+     * @return the meta of a generated job, which also records the executors of its worker as they may differ from
+     * the template's, e.g. with adaptive sizing
+     */
+    static Map<String, String> of(NomadCloud cloud, NomadWorkerTemplate template, int numExecutors) {
+        Map<String, String> meta = of(cloud, template);
+        meta.put(EXECUTORS, String.valueOf(numExecutors));
+        return meta;
+    }
+
+    /**
+     * @return the executors of the listed job's worker, those of the template for jobs that don't record them
+     */
+    static int executorsOf(JobInfo job, NomadWorkerTemplate template) {
+        Map<String, String> meta = job.getMeta();
+        String executors = meta != null ? meta.get(EXECUTORS) : null;
+        if (executors != null) {
+            try {
+                int numExecutors = Integer.parseInt(executors);
+                if (numExecutors > 0) {
+                    return numExecutors;
+                }
+            } catch (NumberFormatException e) {
+                // Not written by this plugin, fall back to the template
+            }
+        }
+        return template.getNumExecutors();
+    }
+
+    /**
+     * @return the ID of this controller, which stays the same across restarts
+     */
+    static String controllerId() {
+        String id = controllerId;
+        if (id == null) {
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            if (jenkins == null) {
+                return "";
+            }
+            id = controllerId = jenkins.getLegacyInstanceId();
+        }
+        return id;
+    }
+
+    /**
+     * @return the filter selecting the jobs of the cloud
+     */
+    static String owned(NomadCloud cloud) {
+        return "Meta." + CONTROLLER + " == " + literal(controllerId()) + " and Meta." + CLOUD + " == " + literal(cloud.name);
+    }
+
+    /**
+     * @return the filter selecting the running jobs of the cloud
+     */
+    static String running(NomadCloud cloud) {
+        return "Status == \"running\" and " + owned(cloud);
+    }
+
+    /**
+     * Lists the jobs of the cloud with the prefix. Clusters that reject the filter, e.g. as their job list stubs
+     * carry no meta to filter by, list all jobs with the prefix instead and the meta is checked here.
+     *
+     * @param running whether to list only running jobs
+     * @return the jobs, empty if they could not be listed
+     */
+    static JobInfo[] list(NomadCloud cloud, String prefix, String namespace, boolean running) {
+        NomadApi nomad = cloud.nomad();
+        JobInfo[] jobs = nomad.getRunningWorkers(prefix, running ? running(cloud) : owned(cloud), namespace, cloud.getNomadACL());
+        if (jobs != null) {
+            return jobs;
+        }
+
+        jobs = nomad.getRunningWorkers(prefix, null, namespace, cloud.getNomadACL());
+        if (jobs == null) {
+            return new JobInfo[0];
+        }
+        List<JobInfo> owned = new ArrayList<>();
+        for (JobInfo job : jobs) {
+            if (isOwned(cloud, job) && (!running || "running".equalsIgnoreCase(job.getStatus()))) {
+                owned.add(job);
+            }
+        }
+        return owned.toArray(new JobInfo[0]);
+    }
+
+    /**
+     * @return whether the listed job is tagged with this controller and the cloud
+     */
+    static boolean isOwned(NomadCloud cloud, JobInfo job) {
+        Map<String, String> meta = job.getMeta();
+        return meta != null && controllerId().equals(meta.get(CONTROLLER)) && Util.fixNull(cloud.name).equals(meta.get(CLOUD));
+    }
+
+    /**
+     * @return the value quoted as a string of a filter expression
+     */
+    private static String literal(String value) {
+        return new Gson().toJson(Util.fixNull(value));
+    }
+}
@@ -0,0 +1,152 @@
+package org.jenkinsci.plugins.nomad;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import hudson.model.Computer;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Job specifications supplied verbatim by a template, in HCL or JSON.
+ * <p>
+ * The job runs as specified: the priority, cache volume and size the plugin chooses for generated jobs don't apply.
+ * <p>
+ * A specification is parsed once, HCL by Nomad itself, and the resulting JSON is cached by the hash of its content.
+ * Provisioning a worker only substitutes the placeholders into the cached JSON.
+ */
+final class NomadJobSpecs {
+
+    private static final Logger LOGGER = Logger.getLogger(NomadJobSpecs.class.getName());
+
+    static final String WORKER_NAME = "%WORKER_NAME%";
+    static final String WORKER_SECRET = "%WORKER_SECRET%";
+    static final String JENKINS_URL = "%JENKINS_URL%";
+
+    // Values of the meta the job is tagged with, see NomadJobMeta
+    private static final String CONTROLLER = "%JENKINS_CONTROLLER%";
+    private static final String CLOUD = "%JENKINS_CLOUD%";
+    private static final String TEMPLATE = "%JENKINS_TEMPLATE%";
+
+    /**
+     * Templates are few and rarely edited, the cache is only dropped to not grow forever on a busy configuration.
+     */
+    private static final int CAPACITY = 64;
+
+    private static final Map<String, String> PARSED = new ConcurrentHashMap<>();
+
+    private NomadJobSpecs() {
+    }
+
+    /**
+     * Parses the job specification of the template in the background, e.g. when the cloud was saved.
+     */
+    static void prepareLater(NomadCloud cloud, NomadWorkerTemplate template) {
+        String spec = template.getJobSpec();
+        if (spec == null || PARSED.containsKey(DigestUtils.sha256Hex(spec))) {
+            return;
+        }
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                prepare(cloud, spec);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Invalid job specification of Nomad worker template " + template.getPrefix() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return the JSON of the job with placeholders, parsed on first use
+     */
+    static String prepare(NomadCloud cloud, String spec) throws IOException {
+        String hash = DigestUtils.sha256Hex(spec);
+        String job = PARSED.get(hash);
+        if (job != null) {
+            return job;
+        }
+
+        JsonObject parsed;
+        if (spec.trim().startsWith("{")) {
+            try {
+                parsed = JsonParser.parseString(spec).getAsJsonObject();
+            } catch (JsonParseException | IllegalStateException e) {
+                throw new IOException("Invalid JSON job specification: " + e.getMessage(), e);
+            }
+            if (parsed.has("Job")) {
+                parsed = parsed.getAsJsonObject("Job");
+            }
+        } else {
+            parsed = cloud.nomad().parseJob(spec, cloud.getNomadACL());
+        }
+
+        job = normalize(parsed).toString();
+        if (PARSED.size() >= CAPACITY) {
+            PARSED.clear();
+        }
+        PARSED.put(hash, job);
+        return job;
+    }
+
+    /**
+     * Checks the job and ties it to the worker: the plugin finds the job of a worker by its name, and the jobs of a
+     * cloud by their meta. Namespace and region are taken from the template, as parsing fills in the defaults of the
+     * cluster.
+     */
+    static JsonObject normalize(JsonObject job) throws IOException {
+        JsonElement groups = job.get("TaskGroups");
+        if (groups == null || !groups.isJsonArray() || ((JsonArray) groups).size() == 0) {
+            throw new IOException("The job specification has no task group");
+        }
+        job.addProperty("ID", WORKER_NAME);
+        job.addProperty("Name", WORKER_NAME);
+        job.remove("Namespace");
+        job.remove("Region");
+
+        JsonElement meta = job.get("Meta");
+        JsonObject tags = meta != null && meta.isJsonObject() ? meta.getAsJsonObject() : new JsonObject();
+        tags.addProperty(NomadJobMeta.CONTROLLER, CONTROLLER);
+        tags.addProperty(NomadJobMeta.CLOUD, CLOUD);
+        tags.addProperty(NomadJobMeta.TEMPLATE, TEMPLATE);
+        job.add("Meta", tags);
+        return job;
+    }
+
+    /**
+     * @return the request body registering the job of the worker
+     */
+    static String render(NomadCloud cloud, NomadWorkerTemplate template, String workerName, String secret) throws IOException {
+        Map<String, String> meta = NomadJobMeta.of(cloud, template);
+        String job = prepare(cloud, template.getJobSpec())
+                .replace(WORKER_NAME, escape(workerName))
+                .replace(WORKER_SECRET, escape(secret))
+                .replace(JENKINS_URL, escape(cloud.getJenkinsUrl()))
+                .replace(CONTROLLER, escape(meta.get(NomadJobMeta.CONTROLLER)))
+                .replace(CLOUD, escape(meta.get(NomadJobMeta.CLOUD)))
+                .replace(TEMPLATE, escape(meta.get(NomadJobMeta.TEMPLATE)));
+        String namespace = cloud.namespaceOf(template);
+        if (namespace != null && !namespace.isEmpty()) {
+            job = "{\"Namespace\":\"" + escape(namespace) + "\"," + job.substring(1);
+        }
+        String region = template.getRegion();
+        if (region != null && !region.isEmpty()) {
+            job = "{\"Region\":\"" + escape(region) + "\"," + job.substring(1);
+        }
+        return "{\"Job\":" + job + "}";
+    }
+
+    /**
+     * @return the value escaped for use inside a JSON string
+     */
+    private static String escape(String value) {
+        String quoted = new Gson().toJson(value);
+        return quoted.substring(1, quoted.length() - 1);
+    }
+}
@@ -0,0 +1,116 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Util;
+import org.jenkinsci.plugins.nomad.Api.JobInfo;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How many jobs of each template Nomad keeps in its state, as last listed by {@link NomadJobCleanup}. Dead jobs
+ * stay until they are purged or garbage collected and make every listing by prefix larger.
+ */
+public final class NomadJobTable {
+
+    private static final NomadJobTable INSTANCE = new NomadJobTable();
+
+    private final Map<String, TemplateJobs> templates = new ConcurrentHashMap<>();
+
+    public static NomadJobTable get() {
+        return INSTANCE;
+    }
+
+    TemplateJobs forTemplate(String cloud, String template) {
+        return templates.computeIfAbsent(Util.fixNull(cloud) + "/" + Util.fixNull(template), k -> new TemplateJobs(cloud, template));
+    }
+
+    /**
+     * @return the jobs by cloud and template
+     */
+    public Map<String, TemplateJobs> getTemplates() {
+        return new TreeMap<>(templates);
+    }
+
+    public static final class TemplateJobs {
+
+        private final String cloud;
+        private final String template;
+
+        private int total;
+        private int running;
+        private int pending;
+        private int dead;
+        private long purged;
+        private long listed = -1;
+
+        TemplateJobs(String cloud, String template) {
+            this.cloud = cloud;
+            this.template = template;
+        }
+
+        /**
+         * Counts the jobs of the template as just listed, of which the given number of dead ones was purged.
+         */
+        synchronized void listed(Iterable<JobInfo> jobs, int purgedNow) {
+            total = running = pending = dead = 0;
+            for (JobInfo job : jobs) {
+                total++;
+                String status = Util.fixNull(job.getStatus());
+                if (status.equalsIgnoreCase("running")) {
+                    running++;
+                } else if (status.equalsIgnoreCase("pending")) {
+                    pending++;
+                } else if (status.equalsIgnoreCase("dead")) {
+                    dead++;
+                }
+            }
+            total -= purgedNow;
+            dead -= purgedNow;
+            purged += purgedNow;
+            listed = System.currentTimeMillis();
+        }
+
+        public String getCloud() {
+            return cloud;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        /**
+         * @return the jobs of the template left in the state of the cluster
+         */
+        public synchronized int getTotal() {
+            return total;
+        }
+
+        public synchronized int getRunning() {
+            return running;
+        }
+
+        public synchronized int getPending() {
+            return pending;
+        }
+
+        public synchronized int getDead() {
+            return dead;
+        }
+
+        /**
+         * @return the dead jobs purged by the periodic cleanup since startup
+         */
+        public synchronized long getPurged() {
+            return purged;
+        }
+
+        public synchronized long getListed() {
+            return listed;
+        }
+
+        public synchronized String getAge() {
+            return listed < 0 ? "-" : Util.getTimeSpanString(System.currentTimeMillis() - listed);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.nomad.Api.NodeInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Watches the Nomad client nodes running workers of clouds with drain awareness, and drains the workers of nodes
+ * that are being drained or were marked ineligible.
+ */
+@Extension
+public class NomadNodeDrainWatcher extends AsyncPeriodicWork {
+
+    private static final long INTERVAL = TimeUnit.SECONDS.toMillis(Long.getLong(NomadNodeDrainWatcher.class.getName() + ".intervalSeconds", 15));
+
+    public NomadNodeDrainWatcher() {
+        super("Nomad node drain watcher");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return INTERVAL;
+    }
+
+    @Override
+    protected Level getNormalLoggingLevel() {
+        return Level.FINE;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        Map<String, List<NomadComputer>> computersByCloud = new HashMap<>();
+        for (Computer c : Jenkins.get().getComputers()) {
+            if (c instanceof NomadComputer) {
+                NomadWorker worker = ((NomadComputer) c).getNode();
+                if (worker != null && worker.getNomadNodeId() != null) {
+                    computersByCloud.computeIfAbsent(worker.getCloudName(), n -> new ArrayList<>()).add((NomadComputer) c);
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<NomadComputer>> entry : computersByCloud.entrySet()) {
+            NomadCloud cloud = (NomadCloud) Jenkins.get().getCloud(entry.getKey());
+            if (cloud == null || !cloud.isDrainAware()) {
+                continue;
+            }
+
+            Map<String, NodeInfo> leaving = new HashMap<>();
+            for (NodeInfo node : cloud.nomad().getLeavingNodes(cloud.getNomadACL())) {
+                if (node.isLeaving()) {
+                    leaving.put(node.getID(), node);
+                }
+            }
+
+            for (NomadComputer computer : entry.getValue()) {
+                NomadWorker worker = computer.getNode();
+                NodeInfo node = worker != null ? leaving.get(worker.getNomadNodeId()) : null;
+                if (node != null) {
+                    computer.drain(node.getName());
+                }
+            }
+        }
+    }
+}
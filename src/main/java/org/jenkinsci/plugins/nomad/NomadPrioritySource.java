@@ -0,0 +1,65 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.Label;
+import hudson.model.Queue;
+import jenkins.model.Jenkins;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Derives the priority of the Nomad job of a worker from the queue items it is provisioned for.
+ * <p>
+ * Only consulted for templates with dynamic priority. When several sources know a priority for an item,
+ * the highest one wins; items no source knows about get the template's priority.
+ */
+public abstract class NomadPrioritySource implements ExtensionPoint {
+
+    public static final int MIN_PRIORITY = 1;
+    public static final int MAX_PRIORITY = 100;
+
+    /**
+     * @return the Nomad priority (1-100) for the item, or <code>null</code> if this source does not know
+     */
+    @CheckForNull
+    public abstract Integer getPriority(@Nonnull Queue.Item item, @Nonnull NomadWorkerTemplate template);
+
+    public static ExtensionList<NomadPrioritySource> all() {
+        return ExtensionList.lookup(NomadPrioritySource.class);
+    }
+
+    /**
+     * @return the priorities of the buildable items waiting for the label, highest first
+     */
+    static List<Integer> prioritiesFor(Label label, NomadWorkerTemplate template) {
+        List<Integer> priorities = new ArrayList<>();
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return priorities;
+        }
+
+        for (Queue.BuildableItem item : jenkins.getQueue().getBuildableItems()) {
+            if (!Objects.equals(item.getAssignedLabel(), label)) {
+                continue;
+            }
+
+            int priority = template.getPriority();
+            for (NomadPrioritySource source : all()) {
+                Integer p = source.getPriority(item, template);
+                if (p != null) {
+                    priority = Math.max(priority, p);
+                }
+            }
+            priorities.add(Math.max(MIN_PRIORITY, Math.min(MAX_PRIORITY, priority)));
+        }
+
+        priorities.sort(Collections.reverseOrder());
+        return priorities;
+    }
+}
@@ -0,0 +1,294 @@
+package org.jenkinsci.plugins.nomad;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import hudson.slaves.Cloud;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * "Nomad provisioning" page under Manage Jenkins, showing the {@link ProvisioningJournal}.
+ * The same data is available as JSON from <code>/manage/nomad-provisioning/json</code>.
+ */
+@Extension
+public class NomadProvisioningLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "network.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Nomad provisioning";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Recent provisioning events, in-flight and slow workers of the Nomad clouds.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "nomad-provisioning";
+    }
+
+    public ProvisioningJournal getJournal() {
+        return ProvisioningJournal.get();
+    }
+
+    public List<NomadCloud> getClouds() {
+        List<NomadCloud> clouds = new ArrayList<>();
+        for (Cloud cloud : Jenkins.get().clouds) {
+            if (cloud instanceof NomadCloud) {
+                clouds.add((NomadCloud) cloud);
+            }
+        }
+        return clouds;
+    }
+
+    public long getRequeued() {
+        return NomadBuildRequeuer.getRequeued();
+    }
+
+    public long getRequeueExhausted() {
+        return NomadBuildRequeuer.getExhausted();
+    }
+
+    public List<TemplateSizing> getSizing() {
+        List<TemplateSizing> sizing = new ArrayList<>();
+        for (NomadCloud cloud : getClouds()) {
+            for (NomadWorkerTemplate template : cloud.getTemplates()) {
+                ResourceUsageStats.TemplateUsage usage = ResourceUsageStats.get().find(template.getPrefix());
+                if (usage != null) {
+                    sizing.add(new TemplateSizing(cloud.name, template, usage));
+                }
+            }
+        }
+        return sizing;
+    }
+
+    public AdaptiveRetention getRetention() {
+        return AdaptiveRetention.get();
+    }
+
+    public NomadJobTable getJobTable() {
+        return NomadJobTable.get();
+    }
+
+    public List<TemplateLifecycle> getLifecycle() {
+        List<TemplateLifecycle> lifecycle = new ArrayList<>();
+        for (NomadCloud cloud : getClouds()) {
+            for (NomadWorkerTemplate template : cloud.getTemplates()) {
+                WorkerLifecycleStats.TemplateLifecycle stats = WorkerLifecycleStats.get().find(template.getPrefix());
+                if (stats != null) {
+                    lifecycle.add(new TemplateLifecycle(cloud.name, template.getPrefix(), stats));
+                }
+            }
+        }
+        return lifecycle;
+    }
+
+    /**
+     * Serves the task log captured for a worker that did not come online.
+     */
+    public void doTaskLog(@QueryParameter String worker, StaplerResponse rsp) throws IOException {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+
+        File file = NomadTaskLogs.fileOf(worker);
+        if (file == null || !file.isFile()) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        rsp.setContentType("text/plain;charset=UTF-8");
+        Files.copy(file.toPath(), rsp.getOutputStream());
+    }
+
+    public void doJson(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+
+        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        ProvisioningJournal journal = getJournal();
+
+        JsonObject pending = new JsonObject();
+        for (NomadCloud cloud : getClouds()) {
+            pending.addProperty(cloud.name, cloud.getPending());
+        }
+
+        JsonObject json = new JsonObject();
+        json.add("pending", pending);
+
+        JsonArray stages = new JsonArray();
+        for (NomadCloud cloud : getClouds()) {
+            for (ProvisioningPipeline.Stage stage : cloud.getPipeline().getStages()) {
+                JsonObject s = new JsonObject();
+                s.addProperty("cloud", cloud.name);
+                s.addProperty("stage", stage.getName());
+                s.addProperty("depth", stage.getDepth());
+                s.addProperty("capacity", stage.getCapacity());
+                s.addProperty("active", stage.getActive());
+                s.addProperty("queued", stage.getQueued());
+                s.addProperty("count", stage.getLatency().getCount());
+                s.addProperty("latencyP50", stage.getLatency().getP50());
+                s.addProperty("latencyP95", stage.getLatency().getP95());
+                s.addProperty("latencyMax", stage.getLatency().getMax());
+                stages.add(s);
+            }
+        }
+        json.add("stages", stages);
+        json.addProperty("virtualThreads", ProvisioningPipeline.isVirtualThreads());
+
+        JsonObject requeues = new JsonObject();
+        requeues.addProperty("requeued", getRequeued());
+        requeues.addProperty("exhausted", getRequeueExhausted());
+        json.add("requeues", requeues);
+        json.add("inFlightByTemplate", gson.toJsonTree(journal.getInFlightByTemplate()));
+        json.add("inFlight", gson.toJsonTree(journal.getInFlight()));
+        json.add("slowProvisions", gson.toJsonTree(journal.getSlowProvisions()));
+        json.add("events", gson.toJsonTree(journal.getEvents()));
+
+        JsonArray sizing = new JsonArray();
+        for (TemplateSizing template : getSizing()) {
+            JsonObject t = new JsonObject();
+            t.addProperty("cloud", template.getCloud());
+            t.addProperty("template", template.getTemplate());
+            t.add("cpu", histogram(template.getReservedCpu(), template.getUsage().getCpu(), template.getUsage().getRecommendedCpu()));
+            t.add("memory", histogram(template.getReservedMemory(), template.getUsage().getMemory(), template.getUsage().getRecommendedMemory()));
+            sizing.add(t);
+        }
+        json.add("sizing", sizing);
+
+        JsonArray lifecycle = new JsonArray();
+        for (TemplateLifecycle template : getLifecycle()) {
+            JsonObject t = new JsonObject();
+            t.addProperty("cloud", template.getCloud());
+            t.addProperty("template", template.getTemplate());
+            for (WorkerLifecycleStats.Metric metric : template.getStats().getMetrics()) {
+                JsonObject m = new JsonObject();
+                m.addProperty("count", metric.getHistogram().getCount());
+                m.addProperty("p50", metric.getHistogram().getP50());
+                m.addProperty("p95", metric.getHistogram().getP95());
+                m.addProperty("max", metric.getHistogram().getMax());
+                t.add(metric.getName(), m);
+            }
+            lifecycle.add(t);
+        }
+        json.add("lifecycle", lifecycle);
+
+        JsonObject retention = new JsonObject();
+        for (Map.Entry<String, AdaptiveRetention.TemplateRetention> entry : getRetention().getTemplates().entrySet()) {
+            JsonObject t = new JsonObject();
+            t.addProperty("arrivalsPerMinute", entry.getValue().getArrivalRate());
+            t.addProperty("coldStart", entry.getValue().getColdStart());
+            t.addProperty("idleGaps", entry.getValue().getGapSamples());
+            t.add("timeouts", gson.toJsonTree(entry.getValue().getHistory()));
+            retention.add(entry.getKey(), t);
+        }
+        json.add("retention", retention);
+
+        JsonArray jobTable = new JsonArray();
+        for (NomadJobTable.TemplateJobs jobs : getJobTable().getTemplates().values()) {
+            JsonObject t = new JsonObject();
+            t.addProperty("cloud", jobs.getCloud());
+            t.addProperty("template", jobs.getTemplate());
+            t.addProperty("total", jobs.getTotal());
+            t.addProperty("running", jobs.getRunning());
+            t.addProperty("pending", jobs.getPending());
+            t.addProperty("dead", jobs.getDead());
+            t.addProperty("purged", jobs.getPurged());
+            t.addProperty("listed", jobs.getListed());
+            jobTable.add(t);
+        }
+        json.add("jobTable", jobTable);
+
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(gson.toJson(json));
+    }
+
+    private static JsonObject histogram(int reserved, CompactHistogram histogram, int recommended) {
+        JsonObject json = new JsonObject();
+        json.addProperty("reserved", reserved);
+        json.addProperty("samples", histogram.getCount());
+        json.addProperty("p50", histogram.getP50());
+        json.addProperty("p95", histogram.getP95());
+        json.addProperty("max", histogram.getMax());
+        json.addProperty("recommended", recommended);
+        return json;
+    }
+
+    public static final class TemplateSizing {
+
+        private final String cloud;
+        private final NomadWorkerTemplate template;
+        private final ResourceUsageStats.TemplateUsage usage;
+
+        TemplateSizing(String cloud, NomadWorkerTemplate template, ResourceUsageStats.TemplateUsage usage) {
+            this.cloud = cloud;
+            this.template = template;
+            this.usage = usage;
+        }
+
+        public String getCloud() {
+            return cloud;
+        }
+
+        public String getTemplate() {
+            return template.getPrefix();
+        }
+
+        public int getReservedCpu() {
+            return template.getCpu();
+        }
+
+        public int getReservedMemory() {
+            return template.getMemory();
+        }
+
+        public boolean isAutoApplied() {
+            return template.isAutoRightSize();
+        }
+
+        public ResourceUsageStats.TemplateUsage getUsage() {
+            return usage;
+        }
+    }
+
+    public static final class TemplateLifecycle {
+
+        private final String cloud;
+        private final String template;
+        private final WorkerLifecycleStats.TemplateLifecycle stats;
+
+        TemplateLifecycle(String cloud, String template, WorkerLifecycleStats.TemplateLifecycle stats) {
+            this.cloud = cloud;
+            this.template = template;
+            this.stats = stats;
+        }
+
+        public String getCloud() {
+            return cloud;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public WorkerLifecycleStats.TemplateLifecycle getStats() {
+            return stats;
+        }
+    }
+}
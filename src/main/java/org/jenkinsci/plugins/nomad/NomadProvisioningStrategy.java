@@ -49,6 +49,8 @@ public class NomadProvisioningStrategy extends NodeProvisioner.Strategy {
                 if (availableCapacity < currentDemand) {
                     Collection<PlannedNode> plannedNodes = nomadCloud.provision(label, currentDemand - availableCapacity);
                     LOGGER.log(Level.FINE, "Planned " + plannedNodes.size() + " new nodes");
+                    ProvisioningJournal.get().record(ProvisioningJournal.Type.DECISION, nomadCloud.name, null, null,
+                            "Label " + label + ": demand=" + currentDemand + " capacity=" + availableCapacity + " planned=" + plannedNodes.size());
 
                     strategyState.recordPendingLaunches(plannedNodes);
                     availableCapacity += plannedNodes.size();
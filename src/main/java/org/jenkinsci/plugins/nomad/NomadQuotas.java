@@ -0,0 +1,137 @@
+package org.jenkinsci.plugins.nomad;
+
+import org.jenkinsci.plugins.nomad.Api.NamespaceInfo;
+import org.jenkinsci.plugins.nomad.Api.QuotaLimit;
+import org.jenkinsci.plugins.nomad.Api.QuotaSpec;
+import org.jenkinsci.plugins.nomad.Api.QuotaUsage;
+import org.jenkinsci.plugins.nomad.Api.Resource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cached view of the resource quotas of the namespaces a cloud provisions into (Nomad Enterprise).
+ * <p>
+ * Usage is refreshed at most once per TTL. In between, the resources of workers submitted by this controller are
+ * deducted locally, as Nomad only counts them once their allocations are placed.
+ */
+final class NomadQuotas {
+
+    private static final Logger LOGGER = Logger.getLogger(NomadQuotas.class.getName());
+
+    private static final long TTL = TimeUnit.SECONDS.toMillis(Long.getLong(NomadQuotas.class.getName() + ".ttlSeconds", 30));
+
+    private final NomadCloud cloud;
+    // "namespace@region" -> remaining resources, null values for namespaces without quota
+    private final Map<String, Remaining> remaining = new HashMap<>();
+    private long refreshed;
+
+    NomadQuotas(NomadCloud cloud) {
+        this.cloud = cloud;
+    }
+
+    /**
+     * @return the resources left in the quota of the namespace, or <code>null</code> if the namespace is unlimited
+     */
+    synchronized Remaining remaining(String namespace, String region) {
+        long now = System.currentTimeMillis();
+        if (now - refreshed > TTL) {
+            remaining.clear();
+            refreshed = now;
+        }
+
+        String key = namespace + "@" + region;
+        if (!remaining.containsKey(key)) {
+            remaining.put(key, fetch(namespace, region));
+        }
+        return remaining.get(key);
+    }
+
+    private Remaining fetch(String namespace, String region) {
+        NomadApi nomad = cloud.nomad();
+        String token = cloud.getNomadACL();
+
+        NamespaceInfo info = nomad.getNamespace(namespace, token);
+        if (info == null || info.getQuota() == null || info.getQuota().isEmpty()) {
+            return null;
+        }
+        QuotaSpec spec = nomad.getQuota(info.getQuota(), token);
+        QuotaLimit limit = null;
+        if (spec != null && spec.getLimits() != null) {
+            for (QuotaLimit l : spec.getLimits()) {
+                if (region.equals(l.getRegion())) {
+                    limit = l;
+                }
+            }
+        }
+        if (limit == null || limit.getRegionLimit() == null) {
+            return null;
+        }
+
+        Resource used = null;
+        for (QuotaUsage usage : nomad.getQuotaUsages(token)) {
+            if (spec.getName().equals(usage.getName()) && usage.getUsed() != null && usage.getUsed().containsKey(limit.getHash())) {
+                used = usage.getUsed().get(limit.getHash()).getRegionLimit();
+            }
+        }
+
+        Remaining result = new Remaining(spec.getName(),
+                remainingOf(limit.getRegionLimit().getCPU(), used != null ? used.getCPU() : null),
+                remainingOf(limit.getRegionLimit().getMemoryMB(), used != null ? used.getMemoryMB() : null));
+        LOGGER.log(Level.FINE, "Quota " + result.getQuota() + " of namespace " + namespace + ": " + result);
+        return result;
+    }
+
+    /**
+     * In quota limits 0 means unlimited and -1 means none allowed.
+     */
+    private static long remainingOf(Integer limit, Integer used) {
+        if (limit == null || limit == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (limit < 0) {
+            return 0;
+        }
+        return Math.max(0, limit - (used != null ? used : 0));
+    }
+
+    static final class Remaining {
+
+        private final String quota;
+        private long cpu;
+        private long memory;
+
+        Remaining(String quota, long cpu, long memory) {
+            this.quota = quota;
+            this.cpu = cpu;
+            this.memory = memory;
+        }
+
+        String getQuota() {
+            return quota;
+        }
+
+        /**
+         * Deducts the resources of a worker if they fit into the quota.
+         *
+         * @return whether the worker fits
+         */
+        synchronized boolean reserve(int cpu, int memory) {
+            if (cpu > this.cpu || memory > this.memory) {
+                return false;
+            }
+            this.cpu -= cpu;
+            this.memory -= memory;
+            return true;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "cpu=" + (cpu == Long.MAX_VALUE ? "unlimited" : cpu + "MHz")
+                    + " memory=" + (memory == Long.MAX_VALUE ? "unlimited" : memory + "MB");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.model.Cause;
+import hudson.model.Run;
+
+/**
+ * Cause of a build scheduled again because the Nomad allocation its previous attempt ran on was lost.
+ */
+public class NomadRequeueCause extends Cause.UpstreamCause {
+
+    private final String allocationId;
+    private final int attempt;
+
+    public NomadRequeueCause(Run<?, ?> lost, String allocationId, int attempt) {
+        super(lost);
+        this.allocationId = allocationId;
+        this.attempt = attempt;
+    }
+
+    public String getAllocationId() {
+        return allocationId;
+    }
+
+    /**
+     * @return how often the build was requeued, starting with 1
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    @Override
+    public String getShortDescription() {
+        return "Requeued after Nomad allocation " + allocationId + " of " + getUpstreamProject() + " #"
+                + getUpstreamBuild() + " was lost (attempt " + attempt + ")";
+    }
+}
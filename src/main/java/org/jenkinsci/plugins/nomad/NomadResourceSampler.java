@@ -0,0 +1,91 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.nomad.Api.AllocationStats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically samples the resource usage of the allocations of online Nomad workers.
+ * <p>
+ * At most a bounded number of workers is sampled per run, one request each, so the load on the Nomad clients
+ * stays predictable on large clusters. Runs take turns over the workers beyond that number.
+ */
+@Extension
+public class NomadResourceSampler extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(NomadResourceSampler.class.getName());
+
+    private static final long INTERVAL = TimeUnit.SECONDS.toMillis(Long.getLong(NomadResourceSampler.class.getName() + ".intervalSeconds", 30));
+    private static final int MAX_SAMPLES = Integer.getInteger(NomadResourceSampler.class.getName() + ".maxSamples", 200);
+
+    private int next;
+
+    public NomadResourceSampler() {
+        super("Nomad resource sampler");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return INTERVAL;
+    }
+
+    @Override
+    protected Level getNormalLoggingLevel() {
+        return Level.FINE;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        List<NomadComputer> computers = new ArrayList<>();
+        for (Computer c : Jenkins.get().getComputers()) {
+            if (!(c instanceof NomadComputer) || !c.isOnline() || c.isIdle()) {
+                continue;
+            }
+
+            NomadComputer computer = (NomadComputer) c;
+            NomadWorker worker = computer.getNode();
+            if (worker == null || worker.getAllocationId() == null || worker.getCloud() == null) {
+                continue;
+            }
+            computers.add(computer);
+        }
+        if (computers.isEmpty()) {
+            return;
+        }
+
+        // Beyond the cap, each run continues where the previous one stopped so that every worker gets sampled
+        int samples = Math.min(computers.size(), MAX_SAMPLES);
+        int start = computers.size() > MAX_SAMPLES ? next % computers.size() : 0;
+        next = start + samples;
+        if (samples < computers.size()) {
+            LOGGER.log(Level.FINE, "Sampling " + samples + " of " + computers.size() + " workers, the others in the next runs");
+        }
+
+        Map<String, String> tokens = new HashMap<>();
+        for (int i = 0; i < samples; i++) {
+            NomadComputer computer = computers.get((start + i) % computers.size());
+            NomadWorker worker = computer.getNode();
+            NomadCloud cloud = worker != null ? worker.getCloud() : null;
+            if (cloud == null) {
+                continue;
+            }
+
+            String token = tokens.computeIfAbsent(cloud.name, n -> cloud.getNomadACL());
+            AllocationStats stats = cloud.nomad().getAllocationStats(worker.getAllocationId(), worker.getNamespace(), token);
+            if (stats != null) {
+                computer.recordUsage(stats.getCpuMHz(), stats.getMemoryMB());
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.model.Action;
+
+/**
+ * Peak resource usage of the Nomad worker while it ran a build, shown on the build page.
+ */
+public class NomadResourceUsageAction implements Action {
+
+    private final String worker;
+    private final String template;
+    private final long peakCpu;
+    private final long peakMemory;
+
+    public NomadResourceUsageAction(String worker, String template, long peakCpu, long peakMemory) {
+        this.worker = worker;
+        this.template = template;
+        this.peakCpu = peakCpu;
+        this.peakMemory = peakMemory;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Nomad resource usage";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+    public String getWorker() {
+        return worker;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return the peak CPU in MHz
+     */
+    public long getPeakCpu() {
+        return peakCpu;
+    }
+
+    /**
+     * @return the peak resident memory in MB
+     */
+    public long getPeakMemory() {
+        return peakMemory;
+    }
+}
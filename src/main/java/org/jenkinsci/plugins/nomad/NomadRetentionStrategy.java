@@ -1,17 +1,76 @@
 package org.jenkinsci.plugins.nomad;
 
 import hudson.model.Descriptor;
+import hudson.slaves.AbstractCloudComputer;
+import hudson.slaves.AbstractCloudSlave;
 import hudson.slaves.CloudRetentionStrategy;
 import hudson.slaves.RetentionStrategy;
 
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 public class NomadRetentionStrategy extends CloudRetentionStrategy {
 
+    private static final Logger LOGGER = Logger.getLogger(NomadRetentionStrategy.class.getName());
+
+    private final int fixedIdleMinutes;
+
+    // Set for workers of templates with adaptive retention
+    private String adaptiveTemplate;
+    private int minIdleMinutes;
+    private int maxIdleMinutes;
+
     public NomadRetentionStrategy(int idleMinutes) {
         super(idleMinutes);
+        this.fixedIdleMinutes = idleMinutes;
     }
 
     public NomadRetentionStrategy(String idleMinutes) {
-        super(Integer.parseInt(idleMinutes));
+        this(Integer.parseInt(idleMinutes));
+    }
+
+    /**
+     * Lets {@link AdaptiveRetention} choose the idle timeout within the given bounds, starting from the fixed one.
+     */
+    NomadRetentionStrategy adaptive(String template, int minIdleMinutes, int maxIdleMinutes) {
+        this.adaptiveTemplate = template;
+        this.minIdleMinutes = minIdleMinutes;
+        this.maxIdleMinutes = maxIdleMinutes;
+        return this;
+    }
+
+    @Override
+    public long check(AbstractCloudComputer c) {
+        if (adaptiveTemplate == null) {
+            return super.check(c);
+        }
+
+        AbstractCloudSlave node = c.getNode();
+        if (node == null || !c.isIdle()) {
+            return 1;
+        }
+        // Workers still connecting or already disconnected were never idle, their idle time counts from creation
+        if (c.isOffline() || c.isConnecting()) {
+            return 1;
+        }
+
+        AdaptiveRetention.TemplateRetention retention = AdaptiveRetention.get().forTemplate(adaptiveTemplate);
+        long idleSince = c.getIdleStartMilliseconds();
+        long timeout = retention.timeout(TimeUnit.MINUTES.toMillis(fixedIdleMinutes),
+                TimeUnit.MINUTES.toMillis(minIdleMinutes), TimeUnit.MINUTES.toMillis(maxIdleMinutes));
+
+        if (System.currentTimeMillis() - idleSince > timeout) {
+            LOGGER.log(Level.INFO, "Disconnecting " + c.getName() + " after an adaptive idle timeout of " + TimeUnit.MILLISECONDS.toSeconds(timeout) + "s");
+            retention.terminatedIdle(idleSince);
+            try {
+                node.terminate();
+            } catch (InterruptedException | IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to terminate " + c.getName(), e);
+            }
+        }
+        return 1;
     }
 
     public static class DescriptorImpl extends Descriptor<RetentionStrategy<?>> {
@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+import hudson.model.Describable;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+public class NomadSpreadTemplate implements Describable<NomadSpreadTemplate> {
+
+    private final String attribute;
+    private final Integer weight;
+    private final String targets;
+
+    @DataBoundConstructor
+    public NomadSpreadTemplate(
+            String attribute,
+            Integer weight,
+            String targets
+    ) {
+        this.attribute = attribute;
+        this.weight = weight;
+        this.targets = targets;
+        readResolve();
+    }
+
+    protected Object readResolve() {
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Descriptor<NomadSpreadTemplate> getDescriptor() {
+        return Jenkins.get().getDescriptor(getClass());
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public String getTargets() {
+        return targets;
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends Descriptor<NomadSpreadTemplate> {
+
+        public DescriptorImpl() {
+            load();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "";
+        }
+
+        public FormValidation doCheckTargets(@QueryParameter String value) {
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.ok();
+            }
+            for (String target : StringUtils.split(value, ", ")) {
+                String percent = StringUtils.substringAfterLast(target, "=");
+                try {
+                    int parsed = Integer.parseInt(percent);
+                    if (parsed < 0 || parsed > 100) {
+                        return FormValidation.error("The percentage of " + target + " must be between 0 and 100");
+                    }
+                } catch (NumberFormatException e) {
+                    return FormValidation.error("Invalid target " + target + ", expected value=percent, e.g. rack-1=70, rack-2=30");
+                }
+            }
+            return FormValidation.ok();
+        }
+    }
+}
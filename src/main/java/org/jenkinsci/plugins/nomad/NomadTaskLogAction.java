@@ -0,0 +1,34 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.model.Action;
+
+/**
+ * Links the computer of a Nomad worker that did not come online to the captured output of its task.
+ */
+public class NomadTaskLogAction implements Action {
+
+    private final String worker;
+
+    public NomadTaskLogAction(String worker) {
+        this.worker = worker;
+    }
+
+    public String getWorker() {
+        return worker;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "clipboard.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Nomad task log";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "/manage/nomad-provisioning/taskLog?worker=" + worker;
+    }
+}
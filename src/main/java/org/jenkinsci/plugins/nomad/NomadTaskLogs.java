@@ -0,0 +1,110 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.model.Computer;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.nomad.Api.AllocationInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Captures the output of the task of a worker that did not come online, so failing or slow images can be
+ * diagnosed without access to the Nomad cluster.
+ * <p>
+ * The log is written straight to <code>$JENKINS_HOME/logs/nomad/&lt;worker&gt;.log</code>, linked from the computer
+ * of the worker and shown on the Nomad provisioning page. Only the most recent logs are kept. It is not linked from
+ * builds: Jenkins does not tell which queued builds a worker was provisioned for.
+ */
+final class NomadTaskLogs {
+
+    private static final Logger LOGGER = Logger.getLogger(NomadTaskLogs.class.getName());
+
+    private static final long MAX_BYTES = Long.getLong(NomadTaskLogs.class.getName() + ".maxBytes", 256 * 1024);
+    private static final int MAX_FILES = Integer.getInteger(NomadTaskLogs.class.getName() + ".maxFiles", 100);
+    private static final long FOLLOW_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong(NomadTaskLogs.class.getName() + ".followSeconds", 5));
+
+    private static final Pattern WORKER_NAME = Pattern.compile("[\\w.-]+");
+
+    private NomadTaskLogs() {
+    }
+
+    /**
+     * @return the log file of the worker, <code>null</code> for names that are no valid worker names
+     */
+    static File fileOf(String workerName) {
+        if (workerName == null || !WORKER_NAME.matcher(workerName).matches()) {
+            return null;
+        }
+        return new File(Jenkins.get().getRootDir(), "logs/nomad/" + workerName + ".log");
+    }
+
+    /**
+     * Copies stdout and stderr of the worker's task to its log file and links it from the worker's computer.
+     */
+    static void capture(NomadCloud cloud, NomadWorkerTemplate template, NomadWorker worker) {
+        String allocationId = worker.getAllocationId();
+        if (allocationId == null) {
+            // Not placed as far as we know, or not running yet with deferred registration
+            for (AllocationInfo allocation : cloud.nomad().getAllocations(worker.getJobName(), template.getRegion(), worker.getNamespace(), cloud.getNomadACL())) {
+                if (allocation.isPlaced()) {
+                    allocationId = allocation.getID();
+                }
+            }
+        }
+        if (allocationId == null) {
+            return;
+        }
+
+        File file = fileOf(worker.getNodeName());
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            try (OutputStream out = Files.newOutputStream(file.toPath())) {
+                for (String type : new String[]{"stdout", "stderr"}) {
+                    out.write(("==> Allocation " + allocationId + ", task " + NomadApi.TASK_NAME + ", " + type + " <==\n").getBytes(StandardCharsets.UTF_8));
+                    cloud.nomad().streamTaskLog(allocationId, type, worker.getNamespace(), cloud.getNomadACL(), out, MAX_BYTES, FOLLOW_MILLIS);
+                    out.write('\n');
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to capture the task log of " + worker.getNodeName(), e);
+            return;
+        }
+
+        ProvisioningJournal.get().record(ProvisioningJournal.Type.TASK_LOG, cloud.name, template.getPrefix(), worker.getNodeName(),
+                "Captured " + file.length() + " bytes of task output");
+        prune(file.getParentFile());
+
+        // Captured before the worker is terminated, so the log is linked from its computer until it is removed
+        Computer computer = worker.toComputer();
+        if (computer != null) {
+            computer.addAction(new NomadTaskLogAction(worker.getNodeName()));
+        }
+    }
+
+    /**
+     * Deletes the oldest logs beyond the maximum number kept.
+     */
+    private static void prune(File directory) {
+        File[] logs = directory.listFiles((dir, name) -> name.endsWith(".log"));
+        if (logs == null || logs.length <= MAX_FILES) {
+            return;
+        }
+        Arrays.sort(logs, Comparator.comparingLong(File::lastModified).reversed());
+        for (int i = MAX_FILES; i < logs.length; i++) {
+            try {
+                Files.deleteIfExists(logs[i].toPath());
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to delete the task log " + logs[i], e);
+            }
+        }
+    }
+}
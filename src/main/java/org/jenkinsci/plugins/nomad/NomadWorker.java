@@ -22,6 +22,13 @@ public class NomadWorker extends AbstractCloudSlave implements EphemeralNode {
     private final Boolean reusable;
     private final String cloudName;
     private final int idleTerminationInMinutes;
+    private String templatePrefix;
+    private String allocationId;
+    private String nomadNodeId;
+    private String cacheVolume;
+    private String namespace;
+    private String jobName;
+    private int recycles;
 
     public NomadWorker(
             String name,
@@ -30,12 +37,24 @@ public class NomadWorker extends AbstractCloudSlave implements EphemeralNode {
             String labelString,
             NomadRetentionStrategy retentionStrategy,
             List<? extends NodeProperty<?>> nodeProperties
+    ) throws Descriptor.FormException, IOException {
+        this(name, cloudName, template, template.getNumExecutors(), labelString, retentionStrategy, nodeProperties);
+    }
+
+    public NomadWorker(
+            String name,
+            String cloudName,
+            NomadWorkerTemplate template,
+            int numExecutors,
+            String labelString,
+            NomadRetentionStrategy retentionStrategy,
+            List<? extends NodeProperty<?>> nodeProperties
     ) throws Descriptor.FormException, IOException {
         super(
                 name,
                 NODE_DESCRIPTION,
                 template.getRemoteFs(),
-                template.getNumExecutors(),
+                numExecutors,
                 template.getMode(),
                 labelString,
                 new JNLPLauncher(false),
@@ -47,6 +66,7 @@ public class NomadWorker extends AbstractCloudSlave implements EphemeralNode {
 
         this.reusable = template.getReusable();
         this.idleTerminationInMinutes = template.getIdleTerminationInMinutes();
+        this.templatePrefix = template.getPrefix();
     }
 
     @DataBoundConstructor
@@ -73,7 +93,11 @@ public class NomadWorker extends AbstractCloudSlave implements EphemeralNode {
     @Override
     protected void _terminate(TaskListener listener) {
         LOGGER.log(Level.INFO, "Asking Nomad to deregister worker '" + getNodeName() + "'");
-        getCloud().nomad().stopWorker(getNodeName(), getCloud().getNomadACL());
+        getCloud().nomad().stopWorker(getJobName(), namespace, getCloud().getNomadACL(), getCloud().isPurgeJobs());
+        ProvisioningJournal.get().record(ProvisioningJournal.Type.TERMINATED, cloudName, templatePrefix, getNodeName(), null);
+        if (cacheVolume != null) {
+            CacheVolumePool.get().release(templatePrefix, cacheVolume, getJobName());
+        }
     }
 
     public NomadCloud getCloud() {
@@ -92,6 +116,72 @@ public class NomadWorker extends AbstractCloudSlave implements EphemeralNode {
         return this.idleTerminationInMinutes;
     }
 
+    public String getTemplatePrefix() {
+        return templatePrefix;
+    }
+
+    /**
+     * @return the template the worker was provisioned from, <code>null</code> if it no longer exists
+     */
+    public NomadWorkerTemplate getTemplate() {
+        NomadCloud cloud = getCloud();
+        return cloud != null ? cloud.getTemplateByPrefix(templatePrefix) : null;
+    }
+
+    public String getAllocationId() {
+        return allocationId;
+    }
+
+    public String getNomadNodeId() {
+        return nomadNodeId;
+    }
+
+    /**
+     * @return the name of the worker's Nomad job, which differs from the node name once its allocation was recycled
+     */
+    public String getJobName() {
+        return jobName != null ? jobName : getNodeName();
+    }
+
+    void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    /**
+     * @return how many workers ran in the worker's allocation before it
+     */
+    public int getRecycles() {
+        return recycles;
+    }
+
+    void setRecycles(int recycles) {
+        this.recycles = recycles;
+    }
+
+    public String getCacheVolume() {
+        return cacheVolume;
+    }
+
+    /**
+     * @return the Nomad namespace of the worker's job, <code>null</code> for the default namespace
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+
+    void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
+    void setCacheVolume(String cacheVolume) {
+        this.cacheVolume = cacheVolume;
+    }
+
+    void setAllocation(String allocationId, String nomadNodeId) {
+        this.allocationId = allocationId;
+        this.nomadNodeId = nomadNodeId;
+    }
+
     @Extension
     public static class DescriptorImpl extends SlaveDescriptor {
         public DescriptorImpl() {
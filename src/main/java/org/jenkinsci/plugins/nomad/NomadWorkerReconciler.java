@@ -0,0 +1,213 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Util;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import hudson.slaves.Cloud;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.nomad.Api.AllocationInfo;
+import org.jenkinsci.plugins.nomad.Api.Job;
+import org.jenkinsci.plugins.nomad.Api.JobInfo;
+import org.jenkinsci.plugins.nomad.Api.TaskGroup;
+import org.jenkinsci.plugins.nomad.Api.VolumeRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Brings the Nomad workers back in sync with their Nomad jobs after the controller restarted.
+ * <p>
+ * Workers are ephemeral nodes and don't survive a restart, while their jobs keep running. The jobs of each cloud
+ * are listed once per namespace by their {@link NomadJobMeta}: jobs that are still running or pending are adopted as
+ * workers with their old name and executors, so their agents can reconnect with the same secret, and dead jobs are
+ * deregistered.
+ * Untagged jobs can't be told apart from those of other controllers and are left alone. Until an adopted worker is
+ * back online it counts as pending capacity, so the queue does not provision the same capacity a second time.
+ */
+public final class NomadWorkerReconciler {
+
+    private static final Logger LOGGER = Logger.getLogger(NomadWorkerReconciler.class.getName());
+
+    // How long startup waits for the adopted workers to be registered, before their capacity is seen by provisioning
+    private static final long ADOPTION_TIMEOUT_SECONDS = 30;
+
+    private static final long POLL_INTERVAL = TimeUnit.SECONDS.toMillis(2);
+
+    private NomadWorkerReconciler() {
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void reconcileAll() {
+        for (Cloud cloud : Jenkins.get().clouds) {
+            if (cloud instanceof NomadCloud) {
+                try {
+                    reconcile((NomadCloud) cloud);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to reconcile the workers of cloud " + cloud.name, e);
+                }
+            }
+        }
+    }
+
+    static void reconcile(NomadCloud cloud) {
+        List<Runnable> adoptions = new ArrayList<>();
+        List<Runnable> removals = new ArrayList<>();
+
+        Set<String> namespaces = new LinkedHashSet<>();
+        for (NomadWorkerTemplate template : cloud.getTemplates()) {
+            namespaces.add(Util.fixNull(cloud.namespaceOf(template)));
+        }
+
+        Set<String> registered = NomadCloud.jobNames();
+        for (String namespace : namespaces) {
+            for (JobInfo job : NomadJobMeta.list(cloud, "", namespace, false)) {
+                NomadWorkerTemplate template = templateOf(cloud, job.getName());
+                if (template == null || !namespace.equals(Util.fixNull(cloud.namespaceOf(template)))
+                        || registered.contains(job.getName())) {
+                    continue;
+                }
+
+                if ("dead".equalsIgnoreCase(job.getStatus())) {
+                    removals.add(() -> cloud.nomad().stopWorker(job.getID(), namespace, cloud.getNomadACL(), cloud.isPurgeJobs()));
+                } else {
+                    // Count the capacity right away, before the first provisioning round after startup
+                    int numExecutors = NomadJobMeta.executorsOf(job, template);
+                    cloud.addPending(numExecutors);
+                    ProvisioningJournal.get().planned(cloud.name, template.getPrefix(), job.getName(), TimeUnit.MINUTES.toMillis(cloud.getWorkerTimeout()));
+                    adoptions.add(() -> adopt(cloud, template, job.getName(), numExecutors));
+                }
+            }
+        }
+
+        if (adoptions.isEmpty() && removals.isEmpty()) {
+            return;
+        }
+        LOGGER.log(Level.INFO, "Cloud " + cloud.name + ": adopting " + adoptions.size() + " workers, deregistering " + removals.size() + " dead jobs");
+
+        CountDownLatch done = new CountDownLatch(adoptions.size());
+        for (Runnable adoption : adoptions) {
+            Computer.threadPoolForRemoting.submit(() -> {
+                try {
+                    adoption.run();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        for (Runnable removal : removals) {
+            Computer.threadPoolForRemoting.submit(removal);
+        }
+
+        try {
+            if (!done.await(ADOPTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.log(Level.WARNING, "Cloud " + cloud.name + ": " + done.getCount() + " workers were not registered within " + ADOPTION_TIMEOUT_SECONDS + " seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the template with the longest prefix matching the worker name, as generated by
+     * {@link NomadWorkerTemplate#createWorkerName()}
+     */
+    static NomadWorkerTemplate templateOf(NomadCloud cloud, String workerName) {
+        NomadWorkerTemplate match = null;
+        for (NomadWorkerTemplate template : cloud.getTemplates()) {
+            String prefix = template.getPrefix();
+            if (prefix != null && !prefix.isEmpty() && workerName.startsWith(prefix + "-")
+                    && (match == null || prefix.length() > match.getPrefix().length())) {
+                match = template;
+            }
+        }
+        return match;
+    }
+
+    private static void adopt(NomadCloud cloud, NomadWorkerTemplate template, String workerName, int numExecutors) {
+        ProvisioningJournal journal = ProvisioningJournal.get();
+        NomadWorker worker;
+
+        try {
+            worker = cloud.newWorker(workerName, template, numExecutors);
+            worker.setCacheVolume(cacheVolumeOf(cloud, template, workerName));
+            for (AllocationInfo allocation : cloud.nomad().getAllocations(workerName, template.getRegion(), worker.getNamespace(), cloud.getNomadACL())) {
+                if (allocation.isPlaced() && !allocation.isLost()) {
+                    worker.setAllocation(allocation.getID(), allocation.getNodeID());
+                    NodeLocality.get().placed(template.getPrefix(), allocation.getNodeID());
+                }
+            }
+            Jenkins.get().addNode(worker);
+            journal.record(ProvisioningJournal.Type.REGISTERED, cloud.name, template.getPrefix(), workerName, "Adopted after restart");
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to adopt worker " + workerName + ", deregistering its job", e);
+            journal.record(ProvisioningJournal.Type.FAILED, cloud.name, template.getPrefix(), workerName, "Adoption failed: " + e.getMessage());
+            cloud.addPending(-numExecutors);
+            cloud.nomad().stopWorker(workerName, cloud.namespaceOf(template), cloud.getNomadACL(), cloud.isPurgeJobs());
+            return;
+        }
+
+        // The adopted agent reconnects on its own, workers that don't come back are terminated like new ones
+        awaitReconnection(cloud, template, worker, numExecutors,
+                System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(cloud.getWorkerTimeout()));
+    }
+
+    /**
+     * Polls for the adopted worker to reconnect without holding a thread in between.
+     */
+    private static void awaitReconnection(NomadCloud cloud, NomadWorkerTemplate template, NomadWorker worker, int numExecutors, long deadline) {
+        String workerName = worker.getNodeName();
+        Computer computer = worker.toComputer();
+        if (computer == null) {
+            // Removed in the meantime
+            ProvisioningJournal.get().record(ProvisioningJournal.Type.FAILED, cloud.name, template.getPrefix(), workerName, "Removed before it reconnected");
+            cloud.addPending(-numExecutors);
+            return;
+        }
+        if (computer.isOnline()) {
+            ProvisioningJournal.get().record(ProvisioningJournal.Type.ONLINE, cloud.name, template.getPrefix(), workerName, null);
+            cloud.addPending(-numExecutors);
+            return;
+        }
+        if (System.currentTimeMillis() < deadline) {
+            Timer.get().schedule(() -> awaitReconnection(cloud, template, worker, numExecutors, deadline), POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        ProvisioningJournal.get().record(ProvisioningJournal.Type.TIMEOUT, cloud.name, template.getPrefix(), workerName,
+                "Adopted worker did not reconnect within " + cloud.getWorkerTimeout() + " minutes");
+        cloud.addPending(-numExecutors);
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                worker.terminate();
+            } catch (IOException | InterruptedException e) {
+                LOGGER.log(Level.WARNING, "Failed to terminate adopted worker " + workerName, e);
+            }
+        });
+    }
+
+    private static String cacheVolumeOf(NomadCloud cloud, NomadWorkerTemplate template, String workerName) {
+        if (template.getCacheVolumePool().isEmpty()) {
+            return null;
+        }
+
+        Job job = cloud.nomad().getJob(workerName, cloud.namespaceOf(template), cloud.getNomadACL());
+        TaskGroup[] groups = job != null ? job.getTaskGroups() : null;
+        if (groups == null || groups.length == 0 || groups[0].getVolumes() == null) {
+            return null;
+        }
+        VolumeRequest volume = groups[0].getVolumes().get(NomadApi.CACHE_VOLUME);
+        if (volume != null && CacheVolumePool.get().claim(template.getPrefix(), volume.getSource(), workerName)) {
+            return volume.getSource();
+        }
+        return null;
+    }
+}
@@ -1,5 +1,8 @@
 package org.jenkinsci.plugins.nomad;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import hudson.Extension;
 import hudson.Util;
 import hudson.model.Describable;
@@ -7,11 +10,17 @@ import hudson.model.Descriptor;
 import hudson.model.Label;
 import hudson.model.Node;
 import hudson.model.labels.LabelAtom;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 import hudson.util.Secret;
 import jenkins.model.Jenkins;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -21,6 +30,7 @@ public class NomadWorkerTemplate implements Describable<NomadWorkerTemplate> {
 
     private static final String SLAVE_PREFIX = "jenkins";
     private static final Logger LOGGER = Logger.getLogger(NomadWorkerTemplate.class.getName());
+    private static final int DEFAULT_WARM_NODE_WEIGHT = 50;
 
     private final int idleTerminationInMinutes;
     private final Boolean reusable;
@@ -57,6 +67,35 @@ public class NomadWorkerTemplate implements Describable<NomadWorkerTemplate> {
     private final Set<LabelAtom> labelSet;
     private final List<? extends NomadDevicePluginTemplate> devicePlugins;
     private String driver;
+    private String agentJarPath;
+    private List<? extends NomadAffinityTemplate> affinities;
+    private List<? extends NomadSpreadTemplate> spreads;
+    private boolean preferWarmNodes;
+    private int warmNodeWeight = DEFAULT_WARM_NODE_WEIGHT;
+    private String cacheVolumeType;
+    private String cacheVolumes;
+    private String cacheVolumeDestination;
+    private boolean dynamicPriority;
+    private boolean autoRightSize;
+    private int memoryMax;
+    private boolean adaptiveSizing;
+    private int minExecutors = 1;
+    private int maxExecutors = 1;
+    private int cpuPerExecutor;
+    private int memoryPerExecutor;
+    private int cores;
+    private boolean requeueLostBuilds;
+    private String namespace;
+    private int maxRequeues = 1;
+    private String taskDriver;
+    private String imagePullTimeout;
+    private String extraDriverConfig;
+    private String jobSpec;
+    private boolean adaptiveRetention;
+    private int minIdleMinutes = 1;
+    private int maxIdleMinutes = 60;
+    private boolean recycleAllocations;
+    private int maxRecycles = 10;
 
     @DataBoundConstructor
     public NomadWorkerTemplate(
@@ -147,11 +186,27 @@ public class NomadWorkerTemplate implements Describable<NomadWorkerTemplate> {
     }
 
     protected Object readResolve() {
-        this.driver = !this.image.equals("") ? "docker" : "java";
-        if (this.useRawExec) this.driver = "raw_exec";
+        this.driver = driverOf(image, useRawExec, taskDriver);
+        // Nomad rejects a weight of 0, which is also what configurations saved before the option load with
+        if (this.warmNodeWeight == 0) this.warmNodeWeight = DEFAULT_WARM_NODE_WEIGHT;
         return this;
     }
 
+    static String driverOf(String image, boolean useRawExec, String taskDriver) {
+        String driver = image != null && !image.equals("") ? "docker" : "java";
+        if (useRawExec) driver = "raw_exec";
+        if (taskDriver != null && !taskDriver.isEmpty()) driver = taskDriver;
+        return driver;
+    }
+
+    /**
+     * @return whether the driver runs the agent under the supervisor loop recycling allocations needs, see
+     * {@link DockerDriverConfigBuilder}
+     */
+    static boolean isRecyclingDriver(String driver, String jobSpec) {
+        return StringUtils.isBlank(jobSpec) && NomadDriverConfigBuilder.forDriver(driver) instanceof DockerDriverConfigBuilder;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public Descriptor<NomadWorkerTemplate> getDescriptor() {
@@ -256,6 +311,58 @@ public class NomadWorkerTemplate implements Describable<NomadWorkerTemplate> {
         return driver;
     }
 
+    public String getTaskDriver() {
+        return taskDriver;
+    }
+
+    /**
+     * Overrides the driver derived from the image and the raw exec option, e.g. to run the image with podman.
+     */
+    @DataBoundSetter
+    public void setTaskDriver(String taskDriver) {
+        this.taskDriver = Util.fixEmptyAndTrim(taskDriver);
+        readResolve();
+    }
+
+    public String getImagePullTimeout() {
+        return imagePullTimeout;
+    }
+
+    @DataBoundSetter
+    public void setImagePullTimeout(String imagePullTimeout) {
+        this.imagePullTimeout = Util.fixEmptyAndTrim(imagePullTimeout);
+    }
+
+    public String getExtraDriverConfig() {
+        return extraDriverConfig;
+    }
+
+    @DataBoundSetter
+    public void setExtraDriverConfig(String extraDriverConfig) {
+        this.extraDriverConfig = Util.fixEmptyAndTrim(extraDriverConfig);
+    }
+
+    /**
+     * @return the job specification replacing the one built from this template, <code>null</code> if none
+     */
+    public String getJobSpec() {
+        return jobSpec;
+    }
+
+    @DataBoundSetter
+    public void setJobSpec(String jobSpec) {
+        this.jobSpec = Util.fixEmptyAndTrim(jobSpec);
+    }
+
+    /**
+     * @return whether the node of a worker may be registered only once its allocation runs, see
+     * {@link NomadDriverConfigBuilder#isRetryingConnection}
+     */
+    public boolean canDeferNodeRegistration() {
+        NomadDriverConfigBuilder builder = NomadDriverConfigBuilder.forDriver(getDriver());
+        return jobSpec == null && builder != null && builder.isRetryingConnection(this);
+    }
+
     public Boolean isDockerDriver() {
         return getDriver().equals("docker");
     }
@@ -311,6 +418,267 @@ public class NomadWorkerTemplate implements Describable<NomadWorkerTemplate> {
         return Collections.unmodifiableList(devicePlugins);
     }
 
+    public String getAgentJarPath() {
+        return agentJarPath;
+    }
+
+    @DataBoundSetter
+    public void setAgentJarPath(String agentJarPath) {
+        this.agentJarPath = Util.fixEmptyAndTrim(agentJarPath);
+    }
+
+    public List<NomadAffinityTemplate> getAffinities() {
+        if (affinities == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(affinities);
+    }
+
+    @DataBoundSetter
+    public void setAffinities(List<? extends NomadAffinityTemplate> affinities) {
+        this.affinities = affinities;
+    }
+
+    public List<NomadSpreadTemplate> getSpreads() {
+        if (spreads == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(spreads);
+    }
+
+    @DataBoundSetter
+    public void setSpreads(List<? extends NomadSpreadTemplate> spreads) {
+        this.spreads = spreads;
+    }
+
+    public boolean isPreferWarmNodes() {
+        return preferWarmNodes;
+    }
+
+    @DataBoundSetter
+    public void setPreferWarmNodes(boolean preferWarmNodes) {
+        this.preferWarmNodes = preferWarmNodes;
+    }
+
+    public int getWarmNodeWeight() {
+        return warmNodeWeight;
+    }
+
+    @DataBoundSetter
+    public void setWarmNodeWeight(int warmNodeWeight) {
+        this.warmNodeWeight = warmNodeWeight != 0 ? warmNodeWeight : DEFAULT_WARM_NODE_WEIGHT;
+    }
+
+    public boolean isDynamicPriority() {
+        return dynamicPriority;
+    }
+
+    @DataBoundSetter
+    public void setDynamicPriority(boolean dynamicPriority) {
+        this.dynamicPriority = dynamicPriority;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @DataBoundSetter
+    public void setNamespace(String namespace) {
+        this.namespace = Util.fixEmptyAndTrim(namespace);
+    }
+
+    public boolean isRequeueLostBuilds() {
+        return requeueLostBuilds;
+    }
+
+    @DataBoundSetter
+    public void setRequeueLostBuilds(boolean requeueLostBuilds) {
+        this.requeueLostBuilds = requeueLostBuilds;
+    }
+
+    public int getMaxRequeues() {
+        return maxRequeues;
+    }
+
+    @DataBoundSetter
+    public void setMaxRequeues(int maxRequeues) {
+        this.maxRequeues = Math.max(0, maxRequeues);
+    }
+
+    public boolean isAdaptiveRetention() {
+        return adaptiveRetention;
+    }
+
+    @DataBoundSetter
+    public void setAdaptiveRetention(boolean adaptiveRetention) {
+        this.adaptiveRetention = adaptiveRetention;
+    }
+
+    public int getMinIdleMinutes() {
+        return Math.max(1, minIdleMinutes);
+    }
+
+    @DataBoundSetter
+    public void setMinIdleMinutes(int minIdleMinutes) {
+        this.minIdleMinutes = Math.max(1, minIdleMinutes);
+    }
+
+    public int getMaxIdleMinutes() {
+        // Configurations saved before this option load with 0
+        return maxIdleMinutes > 0 ? Math.max(getMinIdleMinutes(), maxIdleMinutes) : 60;
+    }
+
+    @DataBoundSetter
+    public void setMaxIdleMinutes(int maxIdleMinutes) {
+        this.maxIdleMinutes = Math.max(1, maxIdleMinutes);
+    }
+
+    public boolean isRecycleAllocations() {
+        return recycleAllocations;
+    }
+
+    @DataBoundSetter
+    public void setRecycleAllocations(boolean recycleAllocations) {
+        this.recycleAllocations = recycleAllocations;
+    }
+
+    public int getMaxRecycles() {
+        // Configurations saved before this option load with 0
+        return maxRecycles > 0 ? maxRecycles : 10;
+    }
+
+    @DataBoundSetter
+    public void setMaxRecycles(int maxRecycles) {
+        this.maxRecycles = Math.max(1, maxRecycles);
+    }
+
+    public boolean isAdaptiveSizing() {
+        return adaptiveSizing;
+    }
+
+    @DataBoundSetter
+    public void setAdaptiveSizing(boolean adaptiveSizing) {
+        this.adaptiveSizing = adaptiveSizing;
+    }
+
+    public int getMinExecutors() {
+        return Math.max(1, minExecutors);
+    }
+
+    @DataBoundSetter
+    public void setMinExecutors(int minExecutors) {
+        this.minExecutors = Math.max(1, minExecutors);
+    }
+
+    public int getMaxExecutors() {
+        return Math.max(getMinExecutors(), maxExecutors);
+    }
+
+    @DataBoundSetter
+    public void setMaxExecutors(int maxExecutors) {
+        this.maxExecutors = Math.max(1, maxExecutors);
+    }
+
+    public int getCpuPerExecutor() {
+        return cpuPerExecutor;
+    }
+
+    @DataBoundSetter
+    public void setCpuPerExecutor(int cpuPerExecutor) {
+        this.cpuPerExecutor = cpuPerExecutor;
+    }
+
+    public int getMemoryPerExecutor() {
+        return memoryPerExecutor;
+    }
+
+    @DataBoundSetter
+    public void setMemoryPerExecutor(int memoryPerExecutor) {
+        this.memoryPerExecutor = memoryPerExecutor;
+    }
+
+    /**
+     * Sizes an adaptive worker for the given workload: a single large worker for a burst, a small one for a trickle.
+     * The template's CPU and memory are those of a worker with the minimum number of executors, every additional
+     * executor adds the per-executor CPU and memory.
+     */
+    WorkerOverrides sizeFor(int workload, WorkerOverrides overrides) {
+        int executors = Math.max(getMinExecutors(), Math.min(getMaxExecutors(), workload));
+        int additional = executors - getMinExecutors();
+        return overrides.size(executors, cpu + additional * cpuPerExecutor, memory + additional * memoryPerExecutor);
+    }
+
+    public int getMemoryMax() {
+        return memoryMax;
+    }
+
+    @DataBoundSetter
+    public void setMemoryMax(int memoryMax) {
+        this.memoryMax = memoryMax;
+    }
+
+    public int getCores() {
+        return cores;
+    }
+
+    @DataBoundSetter
+    public void setCores(int cores) {
+        this.cores = cores;
+    }
+
+    public boolean isAutoRightSize() {
+        return autoRightSize;
+    }
+
+    @DataBoundSetter
+    public void setAutoRightSize(boolean autoRightSize) {
+        this.autoRightSize = autoRightSize;
+    }
+
+    public String getCacheVolumeType() {
+        return cacheVolumeType;
+    }
+
+    @DataBoundSetter
+    public void setCacheVolumeType(String cacheVolumeType) {
+        this.cacheVolumeType = Util.fixEmptyAndTrim(cacheVolumeType);
+    }
+
+    public String getCacheVolumes() {
+        return cacheVolumes;
+    }
+
+    @DataBoundSetter
+    public void setCacheVolumes(String cacheVolumes) {
+        this.cacheVolumes = Util.fixEmptyAndTrim(cacheVolumes);
+    }
+
+    public String getCacheVolumeDestination() {
+        return cacheVolumeDestination;
+    }
+
+    @DataBoundSetter
+    public void setCacheVolumeDestination(String cacheVolumeDestination) {
+        this.cacheVolumeDestination = Util.fixEmptyAndTrim(cacheVolumeDestination);
+    }
+
+    /**
+     * @return the sources of the template's cache volume pool
+     */
+    public List<String> getCacheVolumePool() {
+        if (cacheVolumes == null || cacheVolumeDestination == null) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(StringUtils.split(cacheVolumes, ", "));
+    }
+
+    /**
+     * Whether the image already ships the agent jar, in which case no artifact needs to be downloaded.
+     */
+    public boolean isAgentJarBundled() {
+        return agentJarPath != null;
+    }
+
     @Extension
     public static final class DescriptorImpl extends Descriptor<NomadWorkerTemplate> {
 
@@ -322,5 +690,61 @@ public class NomadWorkerTemplate implements Describable<NomadWorkerTemplate> {
         public String getDisplayName() {
             return "";
         }
+
+        public ListBoxModel doFillCacheVolumeTypeItems() {
+            return new ListBoxModel(
+                    new ListBoxModel.Option("Host volume", "host"),
+                    new ListBoxModel.Option("CSI volume", "csi"));
+        }
+
+        public ListBoxModel doFillTaskDriverItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("Derived from image and raw exec option", "");
+            for (NomadDriverConfigBuilder builder : NomadDriverConfigBuilder.all()) {
+                items.add(builder.getDriver());
+            }
+            return items;
+        }
+
+        public FormValidation doCheckJobSpec(@QueryParameter String value) {
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.ok();
+            }
+            if (value.trim().startsWith("{")) {
+                try {
+                    JsonObject job = JsonParser.parseString(value).getAsJsonObject();
+                    NomadJobSpecs.normalize(job.has("Job") ? job.getAsJsonObject("Job") : job);
+                } catch (JsonParseException | IllegalStateException | IOException e) {
+                    return FormValidation.error(e.getMessage());
+                }
+            }
+            if (!value.contains(NomadJobSpecs.WORKER_NAME) || !value.contains(NomadJobSpecs.JENKINS_URL)) {
+                return FormValidation.warning("Without " + NomadJobSpecs.WORKER_NAME + " and " + NomadJobSpecs.JENKINS_URL
+                        + " the agent can't connect to the controller");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckMaxRecycles(@QueryParameter String image, @QueryParameter boolean useRawExec,
+                                                 @QueryParameter String taskDriver, @QueryParameter String jobSpec) {
+            if (!isRecyclingDriver(driverOf(image, useRawExec, Util.fixEmptyAndTrim(taskDriver)), jobSpec)) {
+                return FormValidation.error("Allocations can only be recycled with the docker or podman driver and without a job specification");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckExtraDriverConfig(@QueryParameter String value) {
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.ok();
+            }
+            try {
+                if (!JsonParser.parseString(value).isJsonObject()) {
+                    return FormValidation.error("Must be a JSON object");
+                }
+            } catch (JsonParseException e) {
+                return FormValidation.error("Invalid JSON: " + e.getMessage());
+            }
+            return FormValidation.ok();
+        }
     }
 }
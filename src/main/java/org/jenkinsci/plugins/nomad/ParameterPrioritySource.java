@@ -0,0 +1,38 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.Queue;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Takes the priority from the <code>NOMAD_PRIORITY</code> build parameter, e.g. set by release jobs.
+ */
+@Extension
+public class ParameterPrioritySource extends NomadPrioritySource {
+
+    public static final String PARAMETER = "NOMAD_PRIORITY";
+
+    @CheckForNull
+    @Override
+    public Integer getPriority(@Nonnull Queue.Item item, @Nonnull NomadWorkerTemplate template) {
+        ParametersAction parameters = item.getAction(ParametersAction.class);
+        if (parameters == null) {
+            return null;
+        }
+
+        ParameterValue value = parameters.getParameter(PARAMETER);
+        if (value == null || value.getValue() == null) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(String.valueOf(value.getValue()).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
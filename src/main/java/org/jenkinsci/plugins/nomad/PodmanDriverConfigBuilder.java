@@ -0,0 +1,33 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+
+/**
+ * Runs the agent in the image of the template with the <code>podman</code> driver, which needs no daemon on the
+ * client nodes. Takes the same settings as the Docker driver, except DNS servers.
+ */
+@Extension
+public class PodmanDriverConfigBuilder extends DockerDriverConfigBuilder {
+
+    @Nonnull
+    @Override
+    public String getDriver() {
+        return "podman";
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, Object> build(@Nonnull Context context) {
+        Map<String, Object> driverConfig = containerConfig(context);
+
+        Map<String, String> auth = context.getRegistryAuth();
+        if (auth != null) {
+            // A single block, unlike the docker driver
+            driverConfig.put("auth", auth);
+        }
+        return driverConfig;
+    }
+}
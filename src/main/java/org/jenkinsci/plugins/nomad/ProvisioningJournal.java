@@ -0,0 +1,280 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free journal of the most recent provisioning events of all Nomad clouds.
+ * <p>
+ * Events are written into a ring buffer: writers claim a slot with a single atomic increment and never block each
+ * other, old events are simply overwritten. Workers between planning and coming online are tracked separately so
+ * that every event can carry the time spent since the worker was planned, until a final event or their timeout.
+ */
+public final class ProvisioningJournal {
+
+    private static final int CAPACITY = Integer.getInteger(ProvisioningJournal.class.getName() + ".capacity", 1024);
+    private static final long SLOW_MILLIS = Long.getLong(ProvisioningJournal.class.getName() + ".slowMillis", 60000L);
+    private static final int SLOW_LIMIT = 20;
+    private static final long EXPIRY_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final ProvisioningJournal INSTANCE = new ProvisioningJournal(CAPACITY);
+
+    private final AtomicReferenceArray<Event> events;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    ProvisioningJournal(int capacity) {
+        this.events = new AtomicReferenceArray<>(capacity);
+    }
+
+    public static ProvisioningJournal get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts tracking a worker that was just planned.
+     *
+     * @param timeout milliseconds until the worker is expected to be online, after which it is no longer tracked
+     */
+    void planned(String cloud, String template, String worker, long timeout) {
+        long now = System.currentTimeMillis();
+        expire(now);
+        inFlight.put(worker, new InFlight(cloud, Util.fixNull(template), worker, now, now + timeout + EXPIRY_GRACE_MILLIS));
+    }
+
+    /**
+     * Stops tracking the workers that got no final event within their timeout, e.g. as their provisioning failed
+     * on a path that records none. Their own timeout is given a grace period to be recorded first.
+     */
+    void expire(long now) {
+        for (InFlight worker : inFlight.values()) {
+            if (now > worker.expires) {
+                record(Type.TIMEOUT, worker.getCloud(), worker.getTemplate(), worker.getWorker(), "No outcome recorded within the worker timeout");
+            }
+        }
+    }
+
+    void record(Type type, String cloud, String template, String worker, String message) {
+        long now = System.currentTimeMillis();
+        long duration = -1;
+
+        if (worker != null) {
+            InFlight started = type.isFinal() ? inFlight.remove(worker) : inFlight.get(worker);
+            if (started != null) {
+                duration = now - started.getStarted();
+                if (!type.isFinal()) {
+                    started.stage = type;
+                }
+            }
+        }
+
+        long seq = sequence.getAndIncrement();
+        events.set((int) (seq % events.length()), new Event(seq, now, type, cloud, Util.fixNull(template), worker, duration, message));
+    }
+
+    /**
+     * @return the retained events, newest first
+     */
+    public List<Event> getEvents() {
+        long last = sequence.get();
+        long first = Math.max(0, last - events.length());
+
+        List<Event> result = new ArrayList<>((int) (last - first));
+        for (long seq = last - 1; seq >= first; seq--) {
+            Event event = events.get((int) (seq % events.length()));
+            // Skip slots that have been claimed but not yet written, or already overwritten by a newer event
+            if (event != null && event.seq == seq) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the worker of the cloud is between planning and a final event, which outlives the cloud
+     * instance replaced when its configuration is saved
+     */
+    boolean isInFlight(String cloud, String worker) {
+        InFlight started = inFlight.get(worker);
+        return started != null && Util.fixNull(cloud).equals(started.getCloud());
+    }
+
+    public List<InFlight> getInFlight() {
+        expire(System.currentTimeMillis());
+        List<InFlight> result = new ArrayList<>(inFlight.values());
+        result.sort(Comparator.comparingLong(InFlight::getStarted));
+        return result;
+    }
+
+    /**
+     * @return the number of in-flight workers per template prefix
+     */
+    public Map<String, Integer> getInFlightByTemplate() {
+        expire(System.currentTimeMillis());
+        Map<String, Integer> result = new TreeMap<>();
+        for (InFlight worker : inFlight.values()) {
+            result.merge(worker.getTemplate(), 1, Integer::sum);
+        }
+        return result;
+    }
+
+    /**
+     * @return the slowest recent provisions that either came online or timed out
+     */
+    public List<Event> getSlowProvisions() {
+        List<Event> result = new ArrayList<>();
+        for (Event event : getEvents()) {
+            if ((event.getType() == Type.ONLINE || event.getType() == Type.TIMEOUT) && event.getDuration() >= SLOW_MILLIS) {
+                result.add(event);
+            }
+        }
+        result.sort(Comparator.comparingLong(Event::getDuration).reversed());
+        return Collections.unmodifiableList(result.subList(0, Math.min(SLOW_LIMIT, result.size())));
+    }
+
+    public enum Type {
+        DECISION(false),
+        QUOTA(false),
+        REGISTERED(false),
+        PLACED(false),
+        ONLINE(true),
+        TIMEOUT(true),
+        FAILED(true),
+        TASK_LOG(false),
+        DRAINING(false),
+        LOST(false),
+        REQUEUED(false),
+        RECYCLED(false),
+        TERMINATED(false);
+
+        private final boolean isFinal;
+
+        Type(boolean isFinal) {
+            this.isFinal = isFinal;
+        }
+
+        /**
+         * Whether the worker is no longer in flight after this event.
+         */
+        public boolean isFinal() {
+            return isFinal;
+        }
+    }
+
+    public static final class Event {
+
+        private final transient long seq;
+        private final long timestamp;
+        private final Type type;
+        private final String cloud;
+        private final String template;
+        private final String worker;
+        private final long duration;
+        private final String message;
+
+        Event(long seq, long timestamp, Type type, String cloud, String template, String worker, long duration, String message) {
+            this.seq = seq;
+            this.timestamp = timestamp;
+            this.type = type;
+            this.cloud = cloud;
+            this.template = template;
+            this.worker = worker;
+            this.duration = duration;
+            this.message = message;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getAge() {
+            return Util.getTimeSpanString(System.currentTimeMillis() - timestamp);
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getCloud() {
+            return cloud;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public String getWorker() {
+            return worker;
+        }
+
+        /**
+         * @return milliseconds since the worker was planned, or -1 if unknown
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        public String getDurationString() {
+            return duration < 0 ? "" : Util.getTimeSpanString(duration);
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    public static final class InFlight {
+
+        private final String cloud;
+        private final String template;
+        private final String worker;
+        private final long started;
+        private final transient long expires;
+        private volatile Type stage;
+
+        InFlight(String cloud, String template, String worker, long started, long expires) {
+            this.cloud = cloud;
+            this.template = template;
+            this.worker = worker;
+            this.started = started;
+            this.expires = expires;
+        }
+
+        public String getCloud() {
+            return cloud;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public String getWorker() {
+            return worker;
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        public String getAge() {
+            return Util.getTimeSpanString(System.currentTimeMillis() - started);
+        }
+
+        /**
+         * @return the last event recorded for the worker, <code>null</code> if it was only planned so far
+         */
+        public Type getStage() {
+            return stage;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.slaves.JnlpSlaveAgentProtocol;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.nomad.Api.AllocationInfo;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Provisions the workers of a cloud in stages: register the node, submit the job, await placement and await the
+ * connection of the agent. Planning happens in {@link NomadCloud#provision}.
+ * <p>
+ * With deferred node registration the node is only registered once the allocation is running, so bursts don't
+ * flood Jenkins with offline nodes that are torn down again when their job can't be placed. Only templates whose
+ * agent retries connecting until its node exists defer, see {@link NomadWorkerTemplate#canDeferNodeRegistration()}.
+ * <p>
+ * Each stage has its own threads and a bounded number of workers it holds, so a slow Nomad API only backs up the
+ * submit stage and a contended controller lock only the register stage. Workers wait in the stage feeding a full
+ * stage, a full register stage makes planning provision fewer workers. Stages that wait for Nomad or the agent poll
+ * without holding a thread in between.
+ * <p>
+ * The threads belong to the cloud, so neither other clouds nor remoting can starve its provisioning. On Java 21 and
+ * later they are virtual threads, a stage waiting on Nomad then costs no platform thread.
+ */
+public final class ProvisioningPipeline {
+
+    private static final Logger LOGGER = Logger.getLogger(ProvisioningPipeline.class.getName());
+
+    private static final long POLL_INTERVAL = TimeUnit.SECONDS.toMillis(2);
+
+    private static final boolean VIRTUAL_THREADS = Boolean.parseBoolean(
+            System.getProperty(ProvisioningPipeline.class.getName() + ".virtualThreads", "true"));
+    private static final Method VIRTUAL_FACTORY = virtualFactory();
+
+    private final NomadCloud cloud;
+    private final ProvisioningJournal journal = ProvisioningJournal.get();
+
+    private final Stage register;
+    private final Stage submit;
+    private final Stage placement;
+    private final Stage connection;
+    private final Stage teardown;
+
+    ProvisioningPipeline(NomadCloud cloud) {
+        this.cloud = cloud;
+        this.register = new Stage(cloud.name, "register", 2, 100);
+        this.submit = new Stage(cloud.name, "submit", 8, 100);
+        this.placement = new Stage(cloud.name, "placement", 4, 1000);
+        this.connection = new Stage(cloud.name, "connection", 2, 1000);
+        this.teardown = new Stage(cloud.name, "teardown", 2, 1000);
+    }
+
+    public List<Stage> getStages() {
+        return Arrays.asList(register, submit, placement, connection, teardown);
+    }
+
+    /**
+     * Starts provisioning a planned worker.
+     *
+     * @return the future of the worker, or <code>null</code> if the pipeline is full
+     */
+    CompletableFuture<Node> start(String workerName, NomadWorkerTemplate template, WorkerOverrides overrides, int numExecutors) {
+        Provision provision = new Provision(workerName, template, overrides, numExecutors);
+        if (provision.deferred ? !submit.offer(provision::submit) : !register.offer(provision::register)) {
+            return null;
+        }
+        return provision.future;
+    }
+
+    private final class Provision {
+
+        private final String workerName;
+        private final NomadWorkerTemplate template;
+        private final WorkerOverrides overrides;
+        private final int numExecutors;
+        private final CompletableFuture<Node> future = new CompletableFuture<>();
+        private final boolean deferred;
+
+        private NomadWorker worker;
+        private Stage stage;
+        private final long started = System.currentTimeMillis();
+        private long entered = started;
+        private long deadline;
+
+        Provision(String workerName, NomadWorkerTemplate template, WorkerOverrides overrides, int numExecutors) {
+            this.workerName = workerName;
+            this.template = template;
+            this.overrides = overrides;
+            this.numExecutors = numExecutors;
+            this.deferred = cloud.isDeferNodeRegistration() && template.canDeferNodeRegistration();
+            this.stage = deferred ? submit : register;
+        }
+
+        void register() {
+            try {
+                if (worker == null) {
+                    createWorker();
+                }
+                Jenkins.get().addNode(worker);
+            } catch (Exception e) {
+                fail(ProvisioningJournal.Type.FAILED, "Failed to register node: " + e.getMessage(), e);
+                return;
+            }
+            if (deferred) {
+                advance(connection, this::awaitConnection);
+            } else {
+                advance(submit, this::submit);
+            }
+        }
+
+        private void createWorker() throws Exception {
+            worker = cloud.newWorker(workerName, template, numExecutors);
+            worker.setCacheVolume(overrides.getCacheVolume());
+        }
+
+        void submit() {
+            try {
+                if (worker == null) {
+                    createWorker();
+                }
+
+                // Support for Jenkins security
+                String jnlpSecret = "";
+                if (Jenkins.get().isUseSecurity()) {
+                    jnlpSecret = JnlpSlaveAgentProtocol.SLAVE_SECRET.mac(workerName);
+                }
+
+                LOGGER.log(Level.INFO, "Asking Nomad to schedule new Jenkins worker " + workerName);
+                cloud.nomad().startWorker(cloud, workerName, cloud.getNomadACL(), jnlpSecret, template, overrides);
+            } catch (Exception e) {
+                fail(ProvisioningJournal.Type.FAILED, e.getMessage(), e);
+                return;
+            }
+            journal.record(ProvisioningJournal.Type.REGISTERED, cloud.name, template.getPrefix(), workerName, null);
+
+            deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(cloud.getWorkerTimeout());
+            advance(placement, this::awaitPlacement);
+        }
+
+        /**
+         * Polls Nomad until the worker's allocation is placed on a client node, or the worker came online anyway.
+         * With deferred registration, polls until the allocation is running and registers the node then.
+         */
+        void awaitPlacement() {
+            try {
+                if (!isOnline()) {
+                    AllocationInfo placed = null;
+                    for (AllocationInfo allocation : cloud.nomad().getAllocations(workerName, template.getRegion(), cloud.namespaceOf(template), cloud.getNomadACL())) {
+                        if (deferred ? allocation.isRunning() : allocation.isPlaced()) {
+                            placed = allocation;
+                        }
+                    }
+                    if (placed == null) {
+                        retry(this::awaitPlacement);
+                        return;
+                    }
+                    worker.setAllocation(placed.getID(), placed.getNodeID());
+                    NodeLocality.get().placed(template.getPrefix(), placed.getNodeID());
+                    journal.record(ProvisioningJournal.Type.PLACED, cloud.name, template.getPrefix(), workerName,
+                            "Placed on " + placed.getNodeName());
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Failed to look up the allocation of " + workerName, e);
+                retry(this::awaitPlacement);
+                return;
+            }
+            if (deferred) {
+                advance(register, this::register);
+            } else {
+                advance(connection, this::awaitConnection);
+            }
+        }
+
+        void awaitConnection() {
+            if (!isOnline()) {
+                retry(this::awaitConnection);
+                return;
+            }
+            LOGGER.log(Level.INFO, "Connection established to " + workerName);
+            journal.record(ProvisioningJournal.Type.ONLINE, cloud.name, template.getPrefix(), workerName, null);
+            AdaptiveRetention.get().forTemplate(template.getPrefix()).coldStart(System.currentTimeMillis() - started);
+            stage.leave(entered);
+            cloud.addPending(-numExecutors);
+            future.complete(worker);
+        }
+
+        private boolean isOnline() {
+            Computer computer = worker.toComputer();
+            return computer != null && computer.isOnline();
+        }
+
+        /**
+         * Moves on to the next stage. While it is full, the worker keeps its place in the current stage and tries
+         * again later, without holding a thread of the current stage in between.
+         */
+        private void advance(Stage next, Runnable task) {
+            if (!next.offer(task)) {
+                Timer.get().schedule(() -> advance(next, task), POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                return;
+            }
+            long now = System.currentTimeMillis();
+            stage.leave(entered);
+            stage = next;
+            entered = now;
+        }
+
+        /**
+         * Polls again later, keeping the place in the current stage, until the worker timeout.
+         */
+        private void retry(Runnable task) {
+            if (System.currentTimeMillis() < deadline) {
+                stage.later(task, POLL_INTERVAL);
+                return;
+            }
+            LOGGER.log(Level.SEVERE, "Worker computer did not come online within " + cloud.getWorkerTimeout() + " minutes, terminating worker " + workerName);
+            fail(ProvisioningJournal.Type.TIMEOUT, "Did not come online within " + cloud.getWorkerTimeout() + " minutes",
+                    new RuntimeException("Timed out waiting for agent to start up. Timeout: " + cloud.getWorkerTimeout() + " minutes."));
+        }
+
+        private void fail(ProvisioningJournal.Type type, String message, Throwable cause) {
+            journal.record(type, cloud.name, template.getPrefix(), workerName, message);
+            stage.leave(entered);
+            cloud.addPending(-numExecutors);
+            future.completeExceptionally(cause);
+
+            if (worker == null) {
+                releaseCacheVolume();
+                return;
+            }
+            long failed = System.currentTimeMillis();
+            Runnable cleanup = () -> {
+                try {
+                    if (type == ProvisioningJournal.Type.TIMEOUT) {
+                        // Capture what the task printed before its job is deregistered
+                        NomadTaskLogs.capture(cloud, template, worker);
+                    }
+                    terminate();
+                } finally {
+                    teardown.leave(failed);
+                }
+            };
+            if (!teardown.offer(cleanup)) {
+                LOGGER.log(Level.WARNING, "Teardown of provisioning " + cloud.name + " is full, terminating " + workerName + " right away");
+                terminate();
+            }
+        }
+
+        private void terminate() {
+            try {
+                worker.terminate();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to terminate worker " + workerName, e);
+            } finally {
+                // Terminating the worker releases it too, unless it failed before getting that far
+                releaseCacheVolume();
+            }
+        }
+
+        private void releaseCacheVolume() {
+            if (overrides.getCacheVolume() != null) {
+                CacheVolumePool.get().release(template.getPrefix(), overrides.getCacheVolume(), workerName);
+            }
+        }
+    }
+
+    public static boolean isVirtualThreads() {
+        return VIRTUAL_FACTORY != null;
+    }
+
+    /**
+     * @return <code>Thread.ofVirtual()</code>, or <code>null</code> before Java 21 or if turned off. Looked up
+     * reflectively as the plugin is built for Java 8.
+     */
+    private static Method virtualFactory() {
+        if (!VIRTUAL_THREADS) {
+            return null;
+        }
+        try {
+            return Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    static ThreadFactory threadFactory(String name) {
+        if (VIRTUAL_FACTORY != null) {
+            try {
+                Object builder = VIRTUAL_FACTORY.invoke(null);
+                Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+                builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, name + " #", 1L);
+                return (ThreadFactory) ofVirtual.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to create virtual threads for " + name + ", using platform threads", e);
+            }
+        }
+        return new NamingThreadFactory(new DaemonThreadFactory(), name);
+    }
+
+    /**
+     * A stage of the pipeline, holding a bounded number of workers at a time.
+     */
+    public static final class Stage {
+
+        private final String name;
+        private final int capacity;
+        private final Semaphore slots;
+        private final ThreadPoolExecutor executor;
+        private final CompactHistogram latency = new CompactHistogram();
+
+        Stage(String cloud, String name, int threads, int capacity) {
+            this.name = name;
+            this.capacity = capacity;
+            this.slots = new Semaphore(capacity);
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    threadFactory("Nomad provisioning " + cloud + " " + name));
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        boolean offer(Runnable task) {
+            if (!slots.tryAcquire()) {
+                return false;
+            }
+            executor.execute(task);
+            return true;
+        }
+
+        void later(Runnable task, long delayMillis) {
+            Timer.get().schedule(() -> executor.execute(task), delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        void leave(long entered) {
+            latency.record(System.currentTimeMillis() - entered);
+            slots.release();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * @return the number of workers in the stage, either queued, processed or waiting to be polled again
+         */
+        public int getDepth() {
+            return capacity - slots.availablePermits();
+        }
+
+        public int getActive() {
+            return executor.getActiveCount();
+        }
+
+        /**
+         * @return the number of tasks waiting for a thread of the stage
+         */
+        public int getQueued() {
+            return executor.getQueue().size();
+        }
+
+        /**
+         * @return the time workers spent in the stage, in milliseconds
+         */
+        public CompactHistogram getLatency() {
+            return latency;
+        }
+    }
+}
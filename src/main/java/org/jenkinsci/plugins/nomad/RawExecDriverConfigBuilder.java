@@ -0,0 +1,36 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Extension;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the agent jar with the <code>java</code> command of the client node, without isolation.
+ */
+@Extension
+public class RawExecDriverConfigBuilder extends NomadDriverConfigBuilder {
+
+    @Nonnull
+    @Override
+    public String getDriver() {
+        return "raw_exec";
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, Object> build(@Nonnull Context context) {
+        List<String> args = new ArrayList<>(context.getJvmOptions());
+        args.add("-jar");
+        args.add(context.getAgentJar("./local/slave.jar"));
+        args.addAll(context.getJnlpArgs());
+
+        Map<String, Object> driverConfig = new HashMap<>();
+        driverConfig.put("command", "java");
+        driverConfig.put("args", args);
+        return driverConfig;
+    }
+}
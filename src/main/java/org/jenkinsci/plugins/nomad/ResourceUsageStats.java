@@ -0,0 +1,83 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CPU and memory actually used by the workers of each template while running builds, as sampled by
+ * {@link NomadResourceSampler}, and the resources they should reserve based on it.
+ */
+public final class ResourceUsageStats {
+
+    static final int MIN_SAMPLES = Integer.getInteger(ResourceUsageStats.class.getName() + ".minSamples", 30);
+    private static final double HEADROOM = 1.2;
+
+    private static final ResourceUsageStats INSTANCE = new ResourceUsageStats();
+
+    private final Map<String, TemplateUsage> templates = new ConcurrentHashMap<>();
+
+    public static ResourceUsageStats get() {
+        return INSTANCE;
+    }
+
+    TemplateUsage forTemplate(String template) {
+        return templates.computeIfAbsent(Util.fixNull(template), t -> new TemplateUsage());
+    }
+
+    /**
+     * @return the usage of the template, or <code>null</code> if none was sampled yet
+     */
+    public TemplateUsage find(String template) {
+        return templates.get(Util.fixNull(template));
+    }
+
+    public Map<String, TemplateUsage> getTemplates() {
+        return new TreeMap<>(templates);
+    }
+
+    public static final class TemplateUsage {
+
+        private final CompactHistogram cpu = new CompactHistogram();
+        private final CompactHistogram memory = new CompactHistogram();
+
+        void record(long cpuMHz, long memoryMB) {
+            cpu.record(cpuMHz);
+            memory.record(memoryMB);
+        }
+
+        public CompactHistogram getCpu() {
+            return cpu;
+        }
+
+        public CompactHistogram getMemory() {
+            return memory;
+        }
+
+        /**
+         * CPU is compressible, so the 95th percentile plus headroom is enough.
+         *
+         * @return the recommended CPU in MHz, or -1 if there are not enough samples yet
+         */
+        public int getRecommendedCpu() {
+            if (cpu.getCount() < MIN_SAMPLES) {
+                return -1;
+            }
+            return (int) Math.ceil(cpu.getP95() * HEADROOM);
+        }
+
+        /**
+         * Running out of memory gets the task killed, so the peak plus headroom is recommended.
+         *
+         * @return the recommended memory in MB, or -1 if there are not enough samples yet
+         */
+        public int getRecommendedMemory() {
+            if (memory.getCount() < MIN_SAMPLES) {
+                return -1;
+            }
+            return (int) Math.ceil(memory.getMax() * HEADROOM);
+        }
+    }
+}
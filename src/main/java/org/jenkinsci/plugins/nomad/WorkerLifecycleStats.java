@@ -0,0 +1,121 @@
+package org.jenkinsci.plugins.nomad;
+
+import hudson.Util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How the workers of each template spend their life: how long their builds take, how long they sit idle between
+ * builds, how long they wait for their first build once connected and how long they live. The data to tune idle
+ * termination, reuse and the number of executors of a template by.
+ */
+public final class WorkerLifecycleStats {
+
+    private static final WorkerLifecycleStats INSTANCE = new WorkerLifecycleStats();
+
+    private final Map<String, TemplateLifecycle> templates = new ConcurrentHashMap<>();
+
+    public static WorkerLifecycleStats get() {
+        return INSTANCE;
+    }
+
+    TemplateLifecycle forTemplate(String template) {
+        return templates.computeIfAbsent(Util.fixNull(template), t -> new TemplateLifecycle());
+    }
+
+    /**
+     * @return the lifecycle of the template's workers, or <code>null</code> if none was recorded yet
+     */
+    public TemplateLifecycle find(String template) {
+        return templates.get(Util.fixNull(template));
+    }
+
+    public Map<String, TemplateLifecycle> getTemplates() {
+        return new TreeMap<>(templates);
+    }
+
+    /**
+     * Durations in milliseconds.
+     */
+    public static final class TemplateLifecycle {
+
+        private final CompactHistogram buildDuration = new CompactHistogram();
+        private final CompactHistogram idleTime = new CompactHistogram();
+        private final CompactHistogram timeToFirstTask = new CompactHistogram();
+        private final CompactHistogram lifetime = new CompactHistogram();
+
+        public CompactHistogram getBuildDuration() {
+            return buildDuration;
+        }
+
+        /**
+         * @return the time a worker was idle before it accepted another task
+         */
+        public CompactHistogram getIdleTime() {
+            return idleTime;
+        }
+
+        /**
+         * @return the time from the agent connecting to the worker accepting its first task
+         */
+        public CompactHistogram getTimeToFirstTask() {
+            return timeToFirstTask;
+        }
+
+        /**
+         * @return the time from the agent connecting to the worker being removed
+         */
+        public CompactHistogram getLifetime() {
+            return lifetime;
+        }
+
+        public List<Metric> getMetrics() {
+            return Arrays.asList(
+                    new Metric("buildDuration", "Build duration", buildDuration),
+                    new Metric("idleTime", "Idle between builds", idleTime),
+                    new Metric("timeToFirstTask", "Time to first build", timeToFirstTask),
+                    new Metric("lifetime", "Lifetime", lifetime));
+        }
+    }
+
+    public static final class Metric {
+
+        private final String name;
+        private final String displayName;
+        private final CompactHistogram histogram;
+
+        Metric(String name, String displayName, CompactHistogram histogram) {
+            this.name = name;
+            this.displayName = displayName;
+            this.histogram = histogram;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public CompactHistogram getHistogram() {
+            return histogram;
+        }
+
+        public String getP50String() {
+            return Util.getTimeSpanString(histogram.getP50());
+        }
+
+        public String getP95String() {
+            return Util.getTimeSpanString(histogram.getP95());
+        }
+
+        public String getMaxString() {
+            return Util.getTimeSpanString(histogram.getMax());
+        }
+    }
+}
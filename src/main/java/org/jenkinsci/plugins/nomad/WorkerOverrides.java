@@ -0,0 +1,65 @@
+package org.jenkinsci.plugins.nomad;
+
+/**
+ * Values decided for a single worker while planning it, taking precedence over its {@link NomadWorkerTemplate}.
+ */
+final class WorkerOverrides {
+
+    private String cacheVolume;
+    private Integer priority;
+    private Integer numExecutors;
+    private Integer cpu;
+    private Integer memory;
+
+    /**
+     * @return the source of the cache volume claimed by the worker, <code>null</code> if it has none
+     */
+    String getCacheVolume() {
+        return cacheVolume;
+    }
+
+    WorkerOverrides cacheVolume(String cacheVolume) {
+        this.cacheVolume = cacheVolume;
+        return this;
+    }
+
+    /**
+     * @return the priority of the worker's Nomad job, <code>null</code> to use the template's priority
+     */
+    Integer getPriority() {
+        return priority;
+    }
+
+    WorkerOverrides priority(Integer priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * @return the number of executors of the worker, <code>null</code> to use the template's
+     */
+    Integer getNumExecutors() {
+        return numExecutors;
+    }
+
+    /**
+     * @return the CPU in MHz reserved for the worker, <code>null</code> to use the template's
+     */
+    Integer getCpu() {
+        return cpu;
+    }
+
+    /**
+     * @return the memory in MB reserved for the worker, <code>null</code> to use the template's
+     */
+    Integer getMemory() {
+        return memory;
+    }
+
+    WorkerOverrides size(int numExecutors, int cpu, int memory) {
+        this.numExecutors = numExecutors;
+        this.cpu = cpu;
+        this.memory = memory;
+        return this;
+    }
+}
@@ -0,0 +1,49 @@
+package org.jenkinsci.plugins.nomad;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveRetentionTest {
+
+    private static final long MIN = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX = TimeUnit.MINUTES.toMillis(60);
+
+    @Test
+    public void testFallbackUntilGapsAreKnown() {
+        AdaptiveRetention.TemplateRetention retention = new AdaptiveRetention.TemplateRetention();
+        assertEquals(TimeUnit.MINUTES.toMillis(5), retention.timeout(TimeUnit.MINUTES.toMillis(5), MIN, MAX));
+        assertEquals(MAX, retention.timeout(TimeUnit.MINUTES.toMillis(90), MIN, MAX));
+        assertEquals(1, retention.getHistory().size());
+    }
+
+    @Test
+    public void testKeepsWorkersBetweenWaves() {
+        AdaptiveRetention.TemplateRetention retention = new AdaptiveRetention.TemplateRetention();
+        for (int i = 0; i < 200; i++) {
+            retention.arrival();
+        }
+        retention.coldStart(TimeUnit.MINUTES.toMillis(2));
+        for (int i = 0; i < 10; i++) {
+            retention.reused(TimeUnit.MINUTES.toMillis(10));
+        }
+        assertEquals(TimeUnit.MINUTES.toMillis(10), retention.timeout(MIN, MIN, MAX));
+
+        // Idling longer than ten cold starts is not worth it
+        retention.coldStart(TimeUnit.SECONDS.toMillis(30));
+        retention.coldStart(TimeUnit.SECONDS.toMillis(30));
+        retention.coldStart(TimeUnit.SECONDS.toMillis(30));
+        retention.coldStart(TimeUnit.SECONDS.toMillis(30));
+        retention.coldStart(TimeUnit.SECONDS.toMillis(30));
+        assertEquals(retention.getColdStart() * 10, retention.timeout(MIN, MIN, MAX));
+    }
+
+    @Test
+    public void testMinimumWithoutArrivals() {
+        AdaptiveRetention.TemplateRetention retention = new AdaptiveRetention.TemplateRetention();
+        retention.reused(TimeUnit.MINUTES.toMillis(10));
+        assertEquals(MIN, retention.timeout(TimeUnit.MINUTES.toMillis(5), MIN, MAX));
+    }
+}
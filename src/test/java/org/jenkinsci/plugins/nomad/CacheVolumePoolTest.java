@@ -0,0 +1,37 @@
+package org.jenkinsci.plugins.nomad;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CacheVolumePoolTest {
+
+    private final CacheVolumePool volumes = new CacheVolumePool();
+    private final List<String> pool = Arrays.asList("cache-1", "cache-2");
+
+    @Test
+    public void testClaims() {
+        assertEquals("cache-1", volumes.claim("claims", pool, "worker-1"));
+        assertEquals("cache-2", volumes.claim("claims", pool, "worker-2"));
+        assertNull(volumes.claim("claims", pool, "worker-3"));
+
+        volumes.release("claims", "cache-1", "worker-1");
+        assertEquals("cache-1", volumes.claim("claims", pool, "worker-3"));
+    }
+
+    @Test
+    public void testReleaseByOtherWorker() {
+        assertEquals("cache-1", volumes.claim("claims", pool, "worker-1"));
+
+        // Only the holder releases a claim, e.g. not a failed worker whose claim was already handed on
+        volumes.release("claims", "cache-1", "worker-2");
+        assertFalse(volumes.claim("claims", "cache-1", "worker-3"));
+        assertTrue(volumes.claim("claims", "cache-1", "worker-1"));
+    }
+}
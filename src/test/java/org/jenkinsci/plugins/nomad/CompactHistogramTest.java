@@ -0,0 +1,33 @@
+package org.jenkinsci.plugins.nomad;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompactHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        CompactHistogram histogram = new CompactHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertTrue(Math.abs(histogram.getP50() - 500) <= 500 / 8);
+        assertTrue(Math.abs(histogram.getP95() - 950) <= 950 / 8);
+        assertEquals(1000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testEmptyAndExtremes() {
+        CompactHistogram histogram = new CompactHistogram();
+        assertEquals(0, histogram.getP95());
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+        assertEquals(CompactHistogram.indexOf(Long.MAX_VALUE), CompactHistogram.indexOf(CompactHistogram.upperBoundOf(CompactHistogram.indexOf(Long.MAX_VALUE))));
+    }
+}
@@ -2,6 +2,8 @@ package org.jenkinsci.plugins.nomad;
 
 import hudson.model.Node;
 import hudson.util.Secret;
+import org.jenkinsci.plugins.nomad.Api.JobInfo;
+import org.junit.After;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -18,7 +20,8 @@ import static org.junit.Assert.assertTrue;
  */
 public class NomadApiTest {
 
-    private final NomadApi nomadApi = new NomadApi("http://localhost");
+    private final NomadApi nomadApi = new NomadApi("http://localhost", Arrays.asList(new JavaDriverConfigBuilder(),
+            new RawExecDriverConfigBuilder(), new ExecDriverConfigBuilder(), new DockerDriverConfigBuilder(), new PodmanDriverConfigBuilder()));
     private final List<NomadConstraintTemplate> constraintTest = new ArrayList<NomadConstraintTemplate>();
     private final NomadDevicePluginTemplate deviceTest = new NomadDevicePluginTemplate("nvidia/gpu", 1);
     private final List<NomadDevicePluginTemplate> devicePluginsTest = Arrays.asList(deviceTest);
@@ -42,6 +45,12 @@ public class NomadApiTest {
             false,
             Collections.singletonList(workerTemplate));
 
+    @After
+    public void tearDown() {
+        // Placements are kept JVM-wide, the jobs of other tests must not prefer the nodes placed here
+        NodeLocality.get().clear();
+    }
+
     @Test
     public void testStartWorker() {
         String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
@@ -75,4 +84,158 @@ public class NomadApiTest {
         assertFalse(job.contains("\"Vault\""));
     }
 
+    @Test
+    public void testWorkerChecksum() {
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertFalse(job.contains("\"GetterOptions\""));
+        assertTrue(job.contains("\"RelativeDest\":\"local/slave.jar\",\"GetterMode\":\"file\""));
+
+        nomadCloud.setWorkerChecksum("sha256:abcdef");
+        job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"GetterSource\":\"workerUrl\",\"GetterOptions\":{\"checksum\":\"sha256:abcdef\"}"));
+    }
+
+    @Test
+    public void testWebSocket() {
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"-tunnel\",\"jenkinsTunnel\""));
+
+        nomadCloud.setWebSocket(true);
+        job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"-url\",\"jenkinsUrl\",\"-webSocket\""));
+        assertFalse(job.contains("\"-tunnel\""));
+    }
+
+    @Test
+    public void testNamespace() {
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertFalse(job.contains("\"Namespace\""));
+
+        nomadCloud.setNamespace("ci");
+        job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"Namespace\":\"ci\""));
+
+        workerTemplate.setNamespace("ci-large");
+        job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"Namespace\":\"ci-large\""));
+    }
+
+    @Test
+    public void testTaskDrivers() {
+        workerTemplate.setTaskDriver("podman");
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"Driver\":\"podman\""));
+        assertTrue(job.contains("\"image\":\"image\""));
+        assertFalse(job.contains("\"dns_servers\""));
+
+        workerTemplate.setTaskDriver("exec");
+        job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"Driver\":\"exec\""));
+        assertTrue(job.contains("\"command\":\"java\""));
+        assertTrue(job.contains("\"-jar\",\"./local/slave.jar\",\"-jnlpUrl\""));
+        assertFalse(job.contains("\"image\""));
+    }
+
+    @Test
+    public void testExtraDriverConfig() {
+        workerTemplate.setExtraDriverConfig("{\"shm_size\": 1024, \"network_mode\": \"host\"}");
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"shm_size\":1024"));
+        // Overrides the settings of the builder
+        assertTrue(job.contains("\"network_mode\":\"host\""));
+        assertFalse(job.contains("\"network_mode\":\"bridge\""));
+    }
+
+    @Test
+    public void testAffinitiesAndSpreads() {
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertFalse(job.contains("\"Affinities\""));
+        assertFalse(job.contains("\"Spreads\""));
+
+        workerTemplate.setAffinities(Collections.singletonList(new NomadAffinityTemplate("${node.class}", "=", "build", 75)));
+        workerTemplate.setSpreads(Collections.singletonList(new NomadSpreadTemplate("${meta.rack}", 50, "r1=70, r2=30")));
+        workerTemplate.setPreferWarmNodes(true);
+        NodeLocality.get().placed("test", "node-1");
+
+        job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"Affinities\":[{\"LTarget\":\"${node.class}\",\"Operand\":\"=\",\"RTarget\":\"build\",\"Weight\":75},"
+                + "{\"LTarget\":\"${node.unique.id}\",\"Operand\":\"set_contains_any\",\"RTarget\":\"node-1\",\"Weight\":50}]"));
+        assertTrue(job.contains("\"Spreads\":[{\"Attribute\":\"${meta.rack}\",\"Weight\":50,\"SpreadTarget\":[{\"Value\":\"r1\",\"Percent\":70},{\"Value\":\"r2\",\"Percent\":30}]}]"));
+
+        // Malformed targets are left out rather than failing the job
+        workerTemplate.setSpreads(Collections.singletonList(new NomadSpreadTemplate("${meta.rack}", 50, "r1=70, r2=thirty, r3")));
+        job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"SpreadTarget\":[{\"Value\":\"r1\",\"Percent\":70}]"));
+    }
+
+    @Test
+    public void testCacheVolume() {
+        workerTemplate.setCacheVolumes("cache-1, cache-2");
+        workerTemplate.setCacheVolumeDestination("/cache");
+        assertEquals(Arrays.asList("cache-1", "cache-2"), workerTemplate.getCacheVolumePool());
+
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate, new WorkerOverrides().cacheVolume("cache-2"));
+        assertTrue(job.contains("\"Volumes\":{\"jenkins-cache\":{\"Name\":\"jenkins-cache\",\"Type\":\"host\",\"Source\":\"cache-2\",\"ReadOnly\":false}}"));
+        assertTrue(job.contains("\"VolumeMounts\":[{\"Volume\":\"jenkins-cache\",\"Destination\":\"/cache\",\"ReadOnly\":false}]"));
+    }
+
+    @Test
+    public void testPriorityOverride() {
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate, new WorkerOverrides().priority(80));
+        assertTrue(job.contains("\"Priority\":80"));
+    }
+
+    @Test
+    public void testOversubscriptionAndCores() {
+        workerTemplate.setMemoryMax(1024);
+        workerTemplate.setCores(2);
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"Resources\":{\"Cores\":2,\"MemoryMB\":256,\"MemoryMaxMB\":1024,"));
+        assertTrue(job.contains("\"args\":[\"-XX:ActiveProcessorCount=2\",\"-XX:MaxRAM=256m\",\"-cp\""));
+    }
+
+    @Test
+    public void testBundledAgentJar() {
+        workerTemplate.setAgentJarPath("/usr/share/jenkins/agent.jar");
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"Artifacts\":[]"));
+        assertTrue(job.contains("\"args\":[\"-cp\",\"/usr/share/jenkins/agent.jar\""));
+    }
+
+    @Test
+    public void testJobSpec() throws Exception {
+        workerTemplate.setJobSpec("{\"Job\":{\"ID\":\"spec\",\"Region\":\"global\",\"TaskGroups\":[{\"Tasks\":[{\"Name\":\"jenkins-worker\","
+                + "\"Config\":{\"args\":[\"-url\",\"%JENKINS_URL%\",\"%WORKER_SECRET%\",\"%WORKER_NAME%\"]}}]}]}}");
+        String job = NomadJobSpecs.render(nomadCloud, workerTemplate, "worker-1", "secret");
+        assertTrue(job.contains("\"ID\":\"worker-1\""));
+        assertTrue(job.contains("\"args\":[\"-url\",\"jenkinsUrl\",\"secret\",\"worker-1\"]"));
+        assertTrue(job.startsWith("{\"Job\":{\"Region\":\"ams\","));
+        assertFalse(job.contains("\"global\""));
+        assertTrue(job.contains("\"jenkins_cloud\":\"nomad\",\"jenkins_template\":\"test\""));
+    }
+
+    @Test
+    public void testJobMeta() {
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"Meta\":{\"jenkins_controller\":\"\",\"jenkins_cloud\":\"nomad\",\"jenkins_template\":\"test\",\"jenkins_executors\":\"1\"}"));
+        assertEquals("Status == \"running\" and Meta.jenkins_controller == \"\" and Meta.jenkins_cloud == \"nomad\"",
+                NomadJobMeta.running(nomadCloud));
+
+        JobInfo listed = new JobInfo("test-1", "test-1", "batch", "running", 50);
+        assertFalse(NomadJobMeta.isOwned(nomadCloud, listed));
+        listed.setMeta(NomadJobMeta.of(nomadCloud, workerTemplate));
+        assertTrue(NomadJobMeta.isOwned(nomadCloud, listed));
+        listed.setMeta(Collections.singletonMap(NomadJobMeta.CONTROLLER, "other"));
+        assertFalse(NomadJobMeta.isOwned(nomadCloud, listed));
+    }
+
+    @Test
+    public void testRecycleAllocations() {
+        workerTemplate.setRecycleAllocations(true);
+        String job = nomadApi.buildWorkerJob("worker-1", "secret", nomadCloud, workerTemplate);
+        assertTrue(job.contains("\"command\":\"/bin/sh\""));
+        assertTrue(job.contains("NAME='worker-1'; SECRET='secret'; NEXT=\\\"$NOMAD_TASK_DIR/next-agent\\\""));
+        assertTrue(job.contains("hudson.remoting.jnlp.Main -headless -noReconnect '-url' 'jenkinsUrl' '-tunnel' 'jenkinsTunnel' '-workDir' 'remoteFs/' \\\"$@\\\""));
+    }
+
 }
@@ -1,7 +1,9 @@
 package org.jenkinsci.plugins.nomad;
 
+import hudson.model.Node;
 import hudson.model.labels.LabelAtom;
 import hudson.slaves.NodeProvisioner;
+import org.jenkinsci.plugins.nomad.Api.JobInfo;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -9,7 +11,9 @@ import org.mockito.Mockito;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class NomadCloudTest {
 
@@ -48,4 +52,56 @@ public class NomadCloudTest {
         Assert.assertEquals(plannedNodes.size(), workload);
     }
 
+    @Test
+    public void testAdaptiveSizing() {
+        NomadWorkerTemplate template = new NomadWorkerTemplate(
+                "adaptive", "500", "1024", "100",
+                null, null, "remoteFs", false, "3", true, "1", Node.Mode.NORMAL,
+                "global", "50", "", "dc1", "", null, false, "bridge",
+                "", false, "", "", null,
+                "", "", "", "", "", "", null
+        );
+        template.setAdaptiveSizing(true);
+        template.setMaxExecutors(10);
+        template.setCpuPerExecutor(100);
+        template.setMemoryPerExecutor(256);
+
+        // A burst gets the largest worker
+        WorkerOverrides overrides = template.sizeFor(25, new WorkerOverrides());
+        Assert.assertEquals(Integer.valueOf(10), overrides.getNumExecutors());
+        Assert.assertEquals(Integer.valueOf(1400), overrides.getCpu());
+        Assert.assertEquals(Integer.valueOf(3328), overrides.getMemory());
+
+        overrides = template.sizeFor(5, new WorkerOverrides());
+        Assert.assertEquals(Integer.valueOf(5), overrides.getNumExecutors());
+        Assert.assertEquals(Integer.valueOf(900), overrides.getCpu());
+        Assert.assertEquals(Integer.valueOf(2048), overrides.getMemory());
+
+        // A trickle gets the smallest
+        overrides = template.sizeFor(0, new WorkerOverrides());
+        Assert.assertEquals(Integer.valueOf(1), overrides.getNumExecutors());
+        Assert.assertEquals(Integer.valueOf(500), overrides.getCpu());
+        Assert.assertEquals(Integer.valueOf(1024), overrides.getMemory());
+    }
+
+
+    @Test
+    public void testPruneSkipsInFlightWorkers() {
+        ProvisioningJournal journal = new ProvisioningJournal(16);
+        // Planned by the instance the saved configuration replaced, deferred workers run before they are registered
+        journal.planned("nomad", "worker", "worker-1", TimeUnit.MINUTES.toMillis(1));
+        journal.planned("other", "worker", "worker-2", TimeUnit.MINUTES.toMillis(1));
+
+        JobInfo[] jobs = {
+                new JobInfo("worker-1", "worker-1", "batch", "running", 50),
+                new JobInfo("worker-2", "worker-2", "batch", "running", 50),
+                new JobInfo("worker-3", "worker-3", "batch", "running", 50),
+                new JobInfo("worker-4", "worker-4", "batch", "running", 50),
+                new JobInfo("worker-5", "worker-5", "batch", "dead", 50)};
+        List<JobInfo> orphans = nomadCloud.orphansOf(jobs, Collections.singleton("worker-4"), journal);
+
+        Assert.assertEquals(2, orphans.size());
+        Assert.assertEquals("worker-2", orphans.get(0).getName());
+        Assert.assertEquals("worker-3", orphans.get(1).getName());
+    }
 }
@@ -0,0 +1,46 @@
+package org.jenkinsci.plugins.nomad;
+
+import org.jenkinsci.plugins.nomad.Api.JobInfo;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class NomadWorkerReconcilerTest {
+
+    private final NomadWorkerTemplate build = Mockito.mock(NomadWorkerTemplate.class);
+    private final NomadWorkerTemplate buildLarge = Mockito.mock(NomadWorkerTemplate.class);
+    private final NomadCloud cloud;
+
+    public NomadWorkerReconcilerTest() {
+        Mockito.when(build.getPrefix()).thenReturn("build");
+        Mockito.when(build.getNumExecutors()).thenReturn(2);
+        Mockito.when(buildLarge.getPrefix()).thenReturn("build-large");
+        cloud = new NomadCloud("nomad", "nomadUrl", "jenkinsUrl", "jenkinsTunnel", "workerUrl", "1", "", false,
+                Arrays.asList(build, buildLarge));
+    }
+
+    @Test
+    public void testTemplateOf() {
+        Assert.assertSame(build, NomadWorkerReconciler.templateOf(cloud, "build-5e1f"));
+        Assert.assertSame(buildLarge, NomadWorkerReconciler.templateOf(cloud, "build-large-5e1f"));
+        Assert.assertNull(NomadWorkerReconciler.templateOf(cloud, "builder-5e1f"));
+    }
+
+    @Test
+    public void testAdoptedExecutors() {
+        // Sized adaptively beyond the template's executors
+        JobInfo job = new JobInfo("build-5e1f", "build-5e1f", "batch", "running", 50);
+        job.setMeta(NomadJobMeta.of(cloud, build, 6));
+        Assert.assertEquals(6, NomadJobMeta.executorsOf(job, build));
+
+        // Jobs started before the executors were recorded
+        job.setMeta(NomadJobMeta.of(cloud, build));
+        Assert.assertEquals(2, NomadJobMeta.executorsOf(job, build));
+
+        job.setMeta(Collections.singletonMap(NomadJobMeta.EXECUTORS, "many"));
+        Assert.assertEquals(2, NomadJobMeta.executorsOf(job, build));
+    }
+}
@@ -0,0 +1,55 @@
+package org.jenkinsci.plugins.nomad;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProvisioningJournalTest {
+
+    private static final long TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    private final ProvisioningJournal journal = new ProvisioningJournal(4);
+
+    @Test
+    public void testRingBufferKeepsNewestEvents() {
+        for (int i = 0; i < 6; i++) {
+            journal.record(ProvisioningJournal.Type.DECISION, "nomad", "jenkins", null, "decision-" + i);
+        }
+
+        List<ProvisioningJournal.Event> events = journal.getEvents();
+        assertEquals(4, events.size());
+        assertEquals("decision-5", events.get(0).getMessage());
+        assertEquals("decision-2", events.get(3).getMessage());
+    }
+
+    @Test
+    public void testInFlightTracking() {
+        journal.planned("nomad", "jenkins", "jenkins-1", TIMEOUT);
+        journal.record(ProvisioningJournal.Type.REGISTERED, "nomad", "jenkins", "jenkins-1", null);
+        assertEquals(ProvisioningJournal.Type.REGISTERED, journal.getInFlight().get(0).getStage());
+
+        journal.planned("nomad", "jenkins", "jenkins-2", TIMEOUT);
+        assertEquals(Integer.valueOf(2), journal.getInFlightByTemplate().get("jenkins"));
+
+        journal.record(ProvisioningJournal.Type.ONLINE, "nomad", "jenkins", "jenkins-1", null);
+
+        assertEquals(1, journal.getInFlight().size());
+        assertTrue(journal.getEvents().get(0).getDuration() >= 0);
+    }
+
+    @Test
+    public void testInFlightExpiry() {
+        journal.planned("nomad", "jenkins", "jenkins-1", TIMEOUT);
+
+        journal.expire(System.currentTimeMillis() + TIMEOUT);
+        assertEquals(1, journal.getInFlight().size());
+
+        journal.expire(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(3));
+        assertTrue(journal.getInFlight().isEmpty());
+        assertEquals(ProvisioningJournal.Type.TIMEOUT, journal.getEvents().get(0).getType());
+    }
+}